@@ -3,6 +3,8 @@ package io.wispforest.owo;
 import io.wispforest.owo.command.OwoDebugCommands;
 import io.wispforest.owo.itemgroup.json.GroupTabLoader;
 import io.wispforest.owo.moddata.ModDataLoader;
+import io.wispforest.owo.network.NetworkHealth;
+import io.wispforest.owo.network.replication.Replication;
 import io.wispforest.owo.ops.LootOps;
 import net.fabricmc.api.ModInitializer;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
@@ -46,6 +48,8 @@ public class Owo implements ModInitializer {
     public void onInitialize() {
         ModDataLoader.load(new GroupTabLoader());
         LootOps.registerListener();
+        Replication.enable();
+        NetworkHealth.enable();
 
         ServerLifecycleEvents.SERVER_STARTING.register(server -> SERVER = server);
         ServerLifecycleEvents.SERVER_STOPPED.register(server -> SERVER = null);
@@ -11,6 +11,8 @@ import java.util.function.Consumer;
 
 /**
  * A collection of utilities to ease implementing a simple {@link net.minecraft.client.gui.screen.ingame.HandledScreen}
+ *
+ * @see io.wispforest.owo.network.replication.ScreenPropertySync
  */
 public class ScreenUtils {
 
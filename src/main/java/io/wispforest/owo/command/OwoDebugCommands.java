@@ -5,6 +5,7 @@ import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.exceptions.SimpleCommandExceptionType;
 import com.mojang.brigadier.suggestion.SuggestionProvider;
 import io.wispforest.owo.Owo;
+import io.wispforest.owo.network.NetworkHealth;
 import io.wispforest.owo.ops.TextOps;
 import net.fabricmc.fabric.api.command.v1.CommandRegistrationCallback;
 import net.minecraft.command.CommandSource;
@@ -190,6 +191,27 @@ public class OwoDebugCommands {
                         return entries.size();
                     }))));
 
+            dispatcher.register(literal("netstats").executes(context -> {
+                final var source = context.getSource();
+
+                source.sendFeedback(TextOps.withColor("---[§ Network Health §]---",
+                        TextOps.color(Formatting.GRAY), GENERAL_PURPLE, TextOps.color(Formatting.GRAY)), false);
+
+                for (var stats : NetworkHealth.all()) {
+                    source.sendFeedback(TextOps.withColor(stats.player().getEntityName() + ": §"
+                                    + (stats.rttMillis() < 0 ? "?" : String.format("%.1f", stats.rttMillis())) + "ms§ rtt, §"
+                                    + stats.queuedPackets() + "§ queued, §" + stats.bytesInFlight() + "B§ in flight, §"
+                                    + String.format("%.1f", stats.bytesSentPerSecond() / 1024) + "§ / §"
+                                    + String.format("%.1f", stats.bytesReceivedPerSecond() / 1024) + "§ KiB/s out / in",
+                            KEY_BLUE, VALUE_BLUE, TextOps.color(Formatting.GRAY), VALUE_BLUE, TextOps.color(Formatting.GRAY), VALUE_BLUE,
+                            TextOps.color(Formatting.GRAY), VALUE_BLUE, TextOps.color(Formatting.GRAY), VALUE_BLUE, TextOps.color(Formatting.GRAY)), false);
+                }
+
+                source.sendFeedback(Text.of("§7------------------------"), false);
+
+                return NetworkHealth.all().size();
+            }));
+
             dispatcher.register(literal("dumpfield").then(argument("field_name", StringArgumentType.string()).executes(context -> {
                 final var targetField = StringArgumentType.getString(context, "field_name");
                 final ServerCommandSource source = context.getSource();
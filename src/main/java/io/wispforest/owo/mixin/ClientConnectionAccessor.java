@@ -0,0 +1,19 @@
+package io.wispforest.owo.mixin;
+
+import io.netty.channel.Channel;
+import net.minecraft.network.ClientConnection;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Accessor;
+
+import java.util.Queue;
+
+@Mixin(ClientConnection.class)
+public interface ClientConnectionAccessor {
+
+    @Accessor("channel")
+    Channel owo$getChannel();
+
+    @Accessor("packetQueue")
+    Queue<?> owo$getPacketQueue();
+
+}
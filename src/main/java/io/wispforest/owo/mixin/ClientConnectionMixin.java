@@ -1,6 +1,7 @@
 package io.wispforest.owo.mixin;
 
 import io.wispforest.owo.network.OwoClientConnectionExtension;
+import io.wispforest.owo.network.OwoNetChannel;
 import net.minecraft.network.ClientConnection;
 import net.minecraft.util.Identifier;
 import org.spongepowered.asm.mixin.Mixin;
@@ -11,6 +12,7 @@ import java.util.Set;
 @Mixin(ClientConnection.class)
 public class ClientConnectionMixin implements OwoClientConnectionExtension {
     private Set<Identifier> channels = Collections.emptySet();
+    private OwoNetChannel.EnvironmentAccess<?, ?, ?> environmentAccess = null;
 
     @Override
     public void owo$setChannelSet(Set<Identifier> channels) {
@@ -21,4 +23,14 @@ public class ClientConnectionMixin implements OwoClientConnectionExtension {
     public Set<Identifier> owo$getChannelSet() {
         return this.channels;
     }
+
+    @Override
+    public void owo$setEnvironmentAccess(OwoNetChannel.EnvironmentAccess<?, ?, ?> access) {
+        this.environmentAccess = access;
+    }
+
+    @Override
+    public OwoNetChannel.EnvironmentAccess<?, ?, ?> owo$getEnvironmentAccess() {
+        return this.environmentAccess;
+    }
 }
@@ -0,0 +1,104 @@
+package io.wispforest.owo.network;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Decides where the handlers of an {@link OwoNetChannel} are executed.
+ * By default, messages are decoded on the netty thread they arrive on and
+ * handled on the game thread, see {@link #MAIN_THREAD}
+ * <p>
+ * Handlers that do not run on the game thread must not touch game state
+ * directly - hand results back via {@code access.runtime().execute(...)}
+ *
+ * @see OwoNetChannel#executor(HandlerExecutor)
+ * @see OwoNetChannel#executor(Class, HandlerExecutor)
+ */
+public interface HandlerExecutor {
+
+    /**
+     * Executes handlers on the game thread of the receiving environment
+     */
+    HandlerExecutor MAIN_THREAD = (access, task) -> ((Executor) access.runtime()).execute(task);
+
+    /**
+     * Executes the given task, which decodes and/or handles a message
+     *
+     * @param access The environment the message was received in
+     * @param task   The task to run
+     */
+    void execute(OwoNetChannel.EnvironmentAccess<?, ?, ?> access, Runnable task);
+
+    /**
+     * @return {@code true} if messages should be decoded as part of
+     * the executed task instead of on the netty thread
+     */
+    default boolean decodeOffThread() {
+        return false;
+    }
+
+    /**
+     * @return An executor which decodes and handles messages on the shared
+     * fork-join pool, without any ordering guarantees. Handlers must not block
+     */
+    static HandlerExecutor forkJoin() {
+        return offThread(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates an executor which runs all messages from the same connection in order,
+     * one after another, on the given backing executor. Messages from different
+     * players are still handled concurrently
+     *
+     * @param backing The executor to run handlers on
+     * @return The created executor
+     */
+    static HandlerExecutor perPlayerSerial(Executor backing) {
+        final Map<Object, HandlerExecutors.SerialQueue> queues = new WeakHashMap<>();
+
+        return decodingOffThread((access, task) -> {
+            HandlerExecutors.SerialQueue queue;
+            // queues are keyed by network handler, since
+            // the player entity is replaced on respawn
+            synchronized (queues) {
+                queue = queues.computeIfAbsent(access.netHandler(), handler -> new HandlerExecutors.SerialQueue(backing));
+            }
+            queue.execute(task);
+        });
+    }
+
+    /**
+     * @return An executor which runs every handler on its own virtual thread, so that
+     * handlers may block freely. If virtual threads are unavailable, which is the case
+     * before Java 21, a shared pool of cached daemon threads is used instead
+     */
+    static HandlerExecutor virtualThreads() {
+        return offThread(HandlerExecutors.VirtualThreads.EXECUTOR);
+    }
+
+    /**
+     * Creates an executor which decodes and handles messages on the given executor
+     *
+     * @param executor The executor to run tasks on
+     * @return The created executor
+     */
+    static HandlerExecutor offThread(Executor executor) {
+        return decodingOffThread((access, task) -> executor.execute(() -> HandlerExecutors.runLogged(task)));
+    }
+
+    private static HandlerExecutor decodingOffThread(HandlerExecutor delegate) {
+        return new HandlerExecutor() {
+            @Override
+            public void execute(OwoNetChannel.EnvironmentAccess<?, ?, ?> access, Runnable task) {
+                delegate.execute(access, task);
+            }
+
+            @Override
+            public boolean decodeOffThread() {
+                return true;
+            }
+        };
+    }
+}
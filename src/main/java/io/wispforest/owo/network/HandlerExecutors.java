@@ -0,0 +1,77 @@
+package io.wispforest.owo.network;
+
+import io.wispforest.owo.Owo;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+final class HandlerExecutors {
+
+    private HandlerExecutors() {}
+
+    // executors like the fork-join pool swallow exceptions
+    // of plain runnables, so handler failures are logged here
+    static void runLogged(Runnable task) {
+        try {
+            task.run();
+        } catch (Throwable t) {
+            Owo.LOGGER.error("Network handler threw an exception", t);
+        }
+    }
+
+    static final class SerialQueue implements Executor {
+
+        private final Executor backing;
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private boolean running = false;
+
+        SerialQueue(Executor backing) {
+            this.backing = backing;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            synchronized (this) {
+                this.tasks.add(task);
+                if (this.running) return;
+                this.running = true;
+            }
+
+            this.backing.execute(this::drain);
+        }
+
+        private void drain() {
+            while (true) {
+                Runnable task;
+                synchronized (this) {
+                    task = this.tasks.poll();
+                    if (task == null) {
+                        this.running = false;
+                        return;
+                    }
+                }
+
+                runLogged(task);
+            }
+        }
+    }
+
+    static final class VirtualThreads {
+
+        private static final ExecutorService EXECUTOR = createExecutor();
+
+        private static ExecutorService createExecutor() {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                return Executors.newCachedThreadPool(runnable -> {
+                    final var thread = new Thread(runnable, "owo network handler");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+    }
+}
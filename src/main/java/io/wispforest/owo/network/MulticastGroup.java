@@ -0,0 +1,138 @@
+package io.wispforest.owo.network;
+
+import net.fabricmc.fabric.api.entity.event.v1.ServerPlayerEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * A persistent, named set of players that messages can be
+ * sent to via {@link OwoNetChannel#serverHandle(MulticastGroup)}.
+ * Players join and leave groups explicitly and are
+ * removed from all groups automatically when they disconnect,
+ * which means sending to a group never has to build a
+ * new target collection. Membership carries over when the
+ * player entity is replaced, like on respawn
+ * <p>
+ * Groups are global, use {@link #of(Identifier)} to
+ * obtain the group with a given name. All groups are
+ * cleared when the server stops
+ */
+public final class MulticastGroup {
+
+    private static final Map<Identifier, MulticastGroup> GROUPS = new HashMap<>();
+
+    private final Identifier id;
+    private final Set<ServerPlayerEntity> members = new LinkedHashSet<>();
+    private final Set<ServerPlayerEntity> membersView = Collections.unmodifiableSet(this.members);
+
+    private MulticastGroup(Identifier id) {
+        this.id = id;
+    }
+
+    /**
+     * Obtains the group with the given name, creating
+     * it if it does not exist yet
+     *
+     * @param id The name of the group
+     * @return The group with the given name
+     */
+    public static MulticastGroup of(Identifier id) {
+        return GROUPS.computeIfAbsent(id, MulticastGroup::new);
+    }
+
+    /**
+     * Looks up the group with the given name
+     *
+     * @param id The name of the group
+     * @return The group with the given name, or {@code null} if it does not exist
+     */
+    public static @Nullable MulticastGroup get(Identifier id) {
+        return GROUPS.get(id);
+    }
+
+    /**
+     * Removes the group with the given name,
+     * kicking all of its members
+     *
+     * @param id The name of the group to remove
+     */
+    public static void remove(Identifier id) {
+        var group = GROUPS.remove(id);
+        if (group != null) group.members.clear();
+    }
+
+    /**
+     * Adds the given player to this group
+     *
+     * @param player The player to add
+     * @return {@code true} if the player was not already a member
+     */
+    public boolean join(ServerPlayerEntity player) {
+        return this.members.add(player);
+    }
+
+    /**
+     * Removes the given player from this group
+     *
+     * @param player The player to remove
+     * @return {@code true} if the player was a member
+     */
+    public boolean leave(ServerPlayerEntity player) {
+        return this.members.remove(player);
+    }
+
+    /**
+     * @return {@code true} if the given player is a member of this group
+     */
+    public boolean contains(ServerPlayerEntity player) {
+        return this.members.contains(player);
+    }
+
+    /**
+     * Removes all members from this group
+     */
+    public void clear() {
+        this.members.clear();
+    }
+
+    /**
+     * @return The amount of players in this group
+     */
+    public int size() {
+        return this.members.size();
+    }
+
+    /**
+     * @return A live, unmodifiable view of the players in this group
+     */
+    public Set<ServerPlayerEntity> members() {
+        return this.membersView;
+    }
+
+    public Identifier id() {
+        return this.id;
+    }
+
+    static {
+        // respawning replaces the player entity, so membership
+        // has to be moved over to the new instance
+        ServerPlayerEvents.COPY_FROM.register((oldPlayer, newPlayer, alive) -> {
+            for (var group : GROUPS.values()) {
+                if (group.members.remove(oldPlayer)) group.members.add(newPlayer);
+            }
+        });
+
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> {
+            for (var group : GROUPS.values()) {
+                group.members.remove(handler.player);
+            }
+        });
+
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> GROUPS.clear());
+    }
+}
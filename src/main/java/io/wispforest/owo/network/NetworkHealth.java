@@ -0,0 +1,249 @@
+package io.wispforest.owo.network;
+
+import io.netty.channel.Channel;
+import io.wispforest.owo.mixin.ClientConnectionAccessor;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.networking.v1.PacketByteBufs;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.server.network.ServerPlayNetworkHandler;
+import net.minecraft.server.network.ServerPlayerEntity;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the connection quality of every player on the server.
+ * Once per second, each player with a compatible client is sent a
+ * probe on the handshake channel to measure the round-trip time
+ * and the outbound packet queue of their connection is sampled
+ * <p>
+ * Additionally, the amount of bytes sent and received on all
+ * {@link OwoNetChannel}s is tracked per player, which allows
+ * features to adapt the amount of data they send to the
+ * throughput a given connection can actually sustain
+ */
+public final class NetworkHealth {
+
+    private static final int SAMPLE_INTERVAL = 20;
+    private static final long PROBE_TIMEOUT_NANOS = 10_000_000_000L;
+
+    // keyed by network handler, which unlike the
+    // player entity survives respawning
+    private static final Map<ServerPlayNetworkHandler, Stats> STATS = new ConcurrentHashMap<>();
+
+    private NetworkHealth() {}
+
+    @ApiStatus.Internal
+    public static void enable() {}
+
+    /**
+     * Looks up the network statistics of the given player
+     *
+     * @param player The player to look up
+     * @return The statistics of the given player, or {@code null}
+     * if they are not connected
+     */
+    public static @Nullable Stats of(ServerPlayerEntity player) {
+        return statsOf(player);
+    }
+
+    /**
+     * @return The smoothed round-trip time to the given player in milliseconds,
+     * or {@code -1} if it has not been measured yet
+     */
+    public static double rttMillis(ServerPlayerEntity player) {
+        var stats = statsOf(player);
+        return stats == null ? -1 : stats.rttMillis();
+    }
+
+    /**
+     * @return A view of the statistics of all connected players
+     */
+    public static Collection<Stats> all() {
+        return Collections.unmodifiableCollection(STATS.values());
+    }
+
+    private static @Nullable Stats statsOf(ServerPlayerEntity player) {
+        // fake players may not have a network handler
+        return player.networkHandler == null ? null : STATS.get(player.networkHandler);
+    }
+
+    @ApiStatus.Internal
+    public static void recordSent(ServerPlayerEntity player, int bytes) {
+        var stats = statsOf(player);
+        if (stats != null) stats.bytesSent.addAndGet(bytes);
+    }
+
+    static void recordReceived(ServerPlayerEntity player, int bytes) {
+        var stats = statsOf(player);
+        if (stats != null) stats.bytesReceived.addAndGet(bytes);
+    }
+
+    public static final class Stats {
+
+        private final ServerPlayNetworkHandler handler;
+
+        private final AtomicLong bytesSent = new AtomicLong();
+        private final AtomicLong bytesReceived = new AtomicLong();
+        private long lastSampleTime = System.nanoTime();
+
+        private volatile double rttMillis = -1;
+        private volatile double lastRttMillis = -1;
+
+        private int nextProbeId = 0;
+        private int outstandingProbeId = -1;
+        private long probeSentAt = 0;
+
+        private int queuedPackets = 0;
+        private long bytesInFlight = 0;
+        private double bytesSentPerSecond = 0;
+        private double bytesReceivedPerSecond = 0;
+
+        private Stats(ServerPlayNetworkHandler handler) {
+            this.handler = handler;
+        }
+
+        private synchronized int startProbe() {
+            final long now = System.nanoTime();
+
+            // wait for the outstanding probe so that round-trip
+            // times above the sample interval can still be measured
+            if (this.outstandingProbeId != -1 && now - this.probeSentAt < PROBE_TIMEOUT_NANOS) return -1;
+
+            this.outstandingProbeId = this.nextProbeId;
+            this.nextProbeId = (this.nextProbeId + 1) & Integer.MAX_VALUE;
+            this.probeSentAt = now;
+
+            return this.outstandingProbeId;
+        }
+
+        private synchronized void completeProbe(int probeId) {
+            // stale or unsolicited echoes carry no usable timing
+            if (probeId != this.outstandingProbeId) return;
+
+            final double rtt = (System.nanoTime() - this.probeSentAt) / 1e6;
+            this.outstandingProbeId = -1;
+
+            this.lastRttMillis = rtt;
+            this.rttMillis = this.rttMillis < 0 ? rtt : this.rttMillis * .8 + rtt * .2;
+        }
+
+        private void sample() {
+            final long now = System.nanoTime();
+            final double seconds = (now - this.lastSampleTime) / 1e9;
+            this.lastSampleTime = now;
+
+            this.bytesSentPerSecond = this.bytesSent.getAndSet(0) / seconds;
+            this.bytesReceivedPerSecond = this.bytesReceived.getAndSet(0) / seconds;
+
+            final var connection = (ClientConnectionAccessor) this.handler.connection;
+            this.queuedPackets = connection.owo$getPacketQueue().size();
+            this.bytesInFlight = pendingWriteBytes(connection.owo$getChannel());
+        }
+
+        private static long pendingWriteBytes(@Nullable Channel channel) {
+            if (channel == null) return 0;
+
+            final var outboundBuffer = channel.unsafe().outboundBuffer();
+            return outboundBuffer == null ? 0 : outboundBuffer.totalPendingWriteBytes();
+        }
+
+        public ServerPlayerEntity player() {
+            return this.handler.player;
+        }
+
+        /**
+         * @return The smoothed round-trip time in milliseconds,
+         * or {@code -1} if it has not been measured yet
+         */
+        public double rttMillis() {
+            return this.rttMillis;
+        }
+
+        /**
+         * @return The most recently measured round-trip time in milliseconds,
+         * or {@code -1} if it has not been measured yet
+         */
+        public double lastRttMillis() {
+            return this.lastRttMillis;
+        }
+
+        /**
+         * @return The amount of packets waiting to be written
+         * to the connection at the last sample
+         */
+        public int queuedPackets() {
+            return this.queuedPackets;
+        }
+
+        /**
+         * @return The amount of bytes written to the connection
+         * but not yet flushed to the socket at the last sample
+         */
+        public long bytesInFlight() {
+            return this.bytesInFlight;
+        }
+
+        /**
+         * @return The amount of bytes per second sent to
+         * this player on all owo channels
+         */
+        public double bytesSentPerSecond() {
+            return this.bytesSentPerSecond;
+        }
+
+        /**
+         * @return The amount of bytes per second received
+         * from this player on all owo channels
+         */
+        public double bytesReceivedPerSecond() {
+            return this.bytesReceivedPerSecond;
+        }
+    }
+
+    static {
+        ServerPlayConnectionEvents.JOIN.register((handler, sender, server) -> STATS.put(handler, new Stats(handler)));
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> STATS.remove(handler));
+
+        // the probe is answered on the netty thread,
+        // so this measures the actual network latency
+        ServerPlayNetworking.registerGlobalReceiver(OwoHandshake.CHANNEL_ID, (server, player, handler, buf, responseSender) -> {
+            final int probeId = buf.readVarInt();
+
+            var stats = STATS.get(handler);
+            if (stats != null) stats.completeProbe(probeId);
+        });
+
+        ServerTickEvents.END_SERVER_TICK.register(server -> {
+            if (server.getTicks() % SAMPLE_INTERVAL != 0) return;
+
+            for (var stats : STATS.values()) {
+                stats.sample();
+
+                if (!ServerPlayNetworking.canSend(stats.handler, OwoHandshake.CHANNEL_ID)) continue;
+
+                final int probeId = stats.startProbe();
+                if (probeId == -1) continue;
+
+                var probe = PacketByteBufs.create();
+                probe.writeVarInt(probeId);
+                ServerPlayNetworking.send(stats.player(), OwoHandshake.CHANNEL_ID, probe);
+            }
+        });
+
+        if (FabricLoader.getInstance().getEnvironmentType() == EnvType.CLIENT) {
+            ClientPlayNetworking.registerGlobalReceiver(OwoHandshake.CHANNEL_ID, (client, handler, buf, responseSender) -> {
+                responseSender.sendPacket(OwoHandshake.CHANNEL_ID, PacketByteBufs.copy(buf));
+            });
+        }
+    }
+}
@@ -10,4 +10,8 @@ public interface OwoClientConnectionExtension {
     void owo$setChannelSet(Set<Identifier> channels);
 
     Set<Identifier> owo$getChannelSet();
+
+    void owo$setEnvironmentAccess(OwoNetChannel.EnvironmentAccess<?, ?, ?> access);
+
+    OwoNetChannel.EnvironmentAccess<?, ?, ?> owo$getEnvironmentAccess();
 }
@@ -238,6 +238,7 @@ public class OwoHandshake {
         int serializersHash = 0;
         for (var entry : channel.serializersByIndex.int2ObjectEntrySet()) {
             serializersHash += entry.getIntKey() * 31 + entry.getValue().serializer.getRecordClass().getName().hashCode();
+            if (entry.getValue().isLazy(entry.getIntKey() < 0 ? EnvType.CLIENT : EnvType.SERVER)) serializersHash += 17;
         }
         return 31 * channel.packetId.hashCode() + serializersHash;
     }
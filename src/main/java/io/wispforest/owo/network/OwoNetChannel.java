@@ -1,5 +1,11 @@
 package io.wispforest.owo.network;
 
+import io.netty.buffer.Unpooled;
+import io.wispforest.owo.network.annotations.CoalescingKey;
+import io.wispforest.owo.network.annotations.Deduplicate;
+import io.wispforest.owo.network.annotations.MemoizedEncoding;
+import io.wispforest.owo.network.serialization.DedupTable;
+import io.wispforest.owo.network.serialization.LazyRecord;
 import io.wispforest.owo.network.serialization.PacketBufSerializer;
 import io.wispforest.owo.network.serialization.RecordSerializer;
 import io.wispforest.owo.util.OwoFreezer;
@@ -10,15 +16,21 @@ import it.unimi.dsi.fastutil.objects.Reference2IntMap;
 import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.networking.v1.PacketByteBufs;
 import net.fabricmc.fabric.api.networking.v1.PlayerLookup;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
 import net.fabricmc.loader.api.FabricLoader;
 import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayNetworkHandler;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.network.ClientConnection;
+import net.minecraft.network.Packet;
 import net.minecraft.network.PacketByteBuf;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.network.ServerPlayNetworkHandler;
@@ -26,8 +38,13 @@ import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.world.ServerWorld;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.math.BlockPos;
+import org.jetbrains.annotations.Nullable;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.RecordComponent;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -54,7 +71,8 @@ import java.util.stream.Collectors;
  * <i>to the server</i> and vice-versa.
  *
  * <p> The registered packet handlers are executed synchronously on the target environment's
- * game thread instead of Netty's event loops - there is no need to call {@code .execute(...)}
+ * game thread instead of Netty's event loops - there is no need to call {@code .execute(...)}.
+ * This can be changed per channel or message class by supplying a different {@link HandlerExecutor}
  *
  * @see PacketBufSerializer#register(Class, BiConsumer, Function)
  * @see PacketBufSerializer#registerCollectionProvider(Class, Supplier)
@@ -65,14 +83,25 @@ public class OwoNetChannel {
     static final Map<Identifier, OwoNetChannel> REQUIRED_CHANNELS = new HashMap<>();
     static final Map<Identifier, OwoNetChannel> OPTIONAL_CHANNELS = new HashMap<>();
 
+    // handler index 0 is never assigned, so it marks a
+    // serverbound packet containing multiple messages
+    private static final int BATCH_INDEX = 0;
+
     private final Map<Class<?>, IndexedSerializer<?>> serializersByClass = new HashMap<>();
     final Int2ObjectMap<IndexedSerializer<?>> serializersByIndex = new Int2ObjectOpenHashMap<>();
 
     private final List<ChannelHandler<Record, ClientAccess>> clientHandlers = new ArrayList<>();
     private final List<ChannelHandler<Record, ServerAccess>> serverHandlers = new ArrayList<>();
 
+    private final Int2ObjectMap<LazyChannelHandler<Record, ClientAccess>> lazyClientHandlers = new Int2ObjectOpenHashMap<>();
+    private final Int2ObjectMap<LazyChannelHandler<Record, ServerAccess>> lazyServerHandlers = new Int2ObjectOpenHashMap<>();
+
     private final Reference2IntMap<Class<?>> deferredClientSerializers = new Reference2IntOpenHashMap<>();
 
+    // keyed by network handler, which unlike the
+    // player entity survives respawning
+    private final Map<ServerPlayNetworkHandler, Map<CoalescedKey, Record>> pendingCoalesced = new HashMap<>();
+
     final Identifier packetId;
     private final String ownerClassName;
     final boolean required;
@@ -80,6 +109,8 @@ public class OwoNetChannel {
     private ClientHandle clientHandle = null;
     private ServerHandle serverHandle = null;
 
+    private HandlerExecutor executor = HandlerExecutor.MAIN_THREAD;
+
     /**
      * Creates a new required channel with given ID. Duplicate channel
      * IDs are not allowed - if there is a collision, the name of the
@@ -126,16 +157,13 @@ public class OwoNetChannel {
         }
 
         ServerPlayNetworking.registerGlobalReceiver(packetId, (server, player, handler, buf, responseSender) -> {
-            int handlerIndex = buf.readVarInt();
-            final Record message = serializersByIndex.get(handlerIndex).serializer.read(buf);
-            server.execute(() -> serverHandlers.get(handlerIndex).handle(message, new ServerAccess(player)));
+            NetworkHealth.recordReceived(player, buf.readableBytes());
+            this.receive(buf, accessOf(player), EnvType.SERVER);
         });
 
         if (FabricLoader.getInstance().getEnvironmentType() == EnvType.CLIENT) {
             ClientPlayNetworking.registerGlobalReceiver(packetId, (client, handler, buf, responseSender) -> {
-                int handlerIndex = buf.readVarInt();
-                final Record message = serializersByIndex.get(-handlerIndex).serializer.read(buf);
-                client.execute(() -> clientHandlers.get(handlerIndex).handle(message, new ClientAccess(handler)));
+                this.receive(buf, accessOf(handler), EnvType.CLIENT);
             });
         }
 
@@ -160,6 +188,7 @@ public class OwoNetChannel {
      * @see #serverHandle(PlayerEntity)
      * @see #serverHandle(MinecraftServer)
      * @see #serverHandle(ServerWorld, BlockPos)
+     * @see #serverHandle(MulticastGroup)
      * @see PacketBufSerializer#register(Class, BiConsumer, Function)
      */
     @SuppressWarnings("unchecked")
@@ -213,6 +242,84 @@ public class OwoNetChannel {
         this.serverHandlers.add((ChannelHandler<Record, ServerAccess>) handler);
     }
 
+    /**
+     * Registers a lazy handler <i>on the client</i> for the specified message class.
+     * Instead of the fully decoded record, the handler receives a {@link LazyRecord}
+     * view which only decodes components once they are accessed. This is useful
+     * for large messages of which handlers often only inspect a few components
+     * <p>
+     * Lazy messages are encoded with a length-prefixed layout, so the message class
+     * must be registered lazily <i>on both sides</i>
+     *
+     * @param messageClass The type of packet data to send and serialize
+     * @param handler      The handler that will receive the lazy view
+     * @see #registerClientbound(Class, ChannelHandler)
+     */
+    @SuppressWarnings("unchecked")
+    public <R extends Record> void registerClientboundLazy(Class<R> messageClass, LazyChannelHandler<R, ClientAccess> handler) {
+        int index = this.clientHandlers.size();
+        this.createSerializer(messageClass, index, EnvType.CLIENT);
+        this.serializersByClass.get(messageClass).setLazy(EnvType.CLIENT);
+
+        this.clientHandlers.add(null);
+        this.lazyClientHandlers.put(index, (LazyChannelHandler<Record, ClientAccess>) handler);
+    }
+
+    /**
+     * Registers a lazy handler <i>on the server</i> for the specified message class.
+     * Instead of the fully decoded record, the handler receives a {@link LazyRecord}
+     * view which only decodes components once they are accessed. This is useful
+     * for large messages of which handlers often only inspect a few components
+     * <p>
+     * Lazy messages are encoded with a length-prefixed layout, so the message class
+     * must be registered lazily <i>on both sides</i>
+     *
+     * @param messageClass The type of packet data to send and serialize
+     * @param handler      The handler that will receive the lazy view
+     * @see #registerServerbound(Class, ChannelHandler)
+     */
+    @SuppressWarnings("unchecked")
+    public <R extends Record> void registerServerboundLazy(Class<R> messageClass, LazyChannelHandler<R, ServerAccess> handler) {
+        int index = this.serverHandlers.size();
+        this.createSerializer(messageClass, index, EnvType.SERVER);
+        this.serializersByClass.get(messageClass).setLazy(EnvType.SERVER);
+
+        this.serverHandlers.add(null);
+        this.lazyServerHandlers.put(index, (LazyChannelHandler<Record, ServerAccess>) handler);
+    }
+
+    /**
+     * Sets the executor which decodes and runs the handlers
+     * of this channel, unless overridden for a specific message class.
+     * This defaults to {@link HandlerExecutor#MAIN_THREAD}
+     *
+     * @param executor The executor to use
+     * @see #executor(Class, HandlerExecutor)
+     */
+    public void executor(HandlerExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Sets the executor which decodes and runs the handlers
+     * of the given message class, on both sides
+     * <p>
+     * Messages with their own executor are never batched by the
+     * {@link ClientHandle} - batches are handled in order on the channel's
+     * executor, which such messages must not run on. Should one arrive in a batch
+     * regardless, it is handed to its own executor and thus not ordered
+     * relative to the rest of the batch
+     *
+     * @param messageClass The message class to set the executor for
+     * @param executor     The executor to use, or {@code null} to
+     *                     use the executor of the channel
+     * @see #executor(HandlerExecutor)
+     */
+    public <R extends Record> void executor(Class<R> messageClass, @Nullable HandlerExecutor executor) {
+        final IndexedSerializer<R> serializer = this.getSerializer(messageClass);
+        serializer.executor = executor;
+    }
+
     public boolean canSendToPlayer(ServerPlayerEntity player) {
         return canSendToPlayer(player.networkHandler);
     }
@@ -334,6 +441,22 @@ public class OwoNetChannel {
         return serverHandle(PlayerLookup.tracking(world, pos));
     }
 
+    /**
+     * Obtains a server handle used to send packets
+     * <i>to all members of the given multicast group</i>
+     * <p>
+     * <b>This handle will be reused - do not retain references</b>
+     *
+     * @param group The group to target
+     * @return A server handle configured for sending packets
+     * to all current members of the given group
+     */
+    public ServerHandle serverHandle(MulticastGroup group) {
+        var handle = getServerHandle();
+        handle.targets = group.members();
+        return handle;
+    }
+
     private ServerHandle getServerHandle() {
         if (this.serverHandle == null) this.serverHandle = new ServerHandle();
         return serverHandle;
@@ -356,46 +479,334 @@ public class OwoNetChannel {
     }
 
     @SuppressWarnings("unchecked")
-    private <R extends Record> PacketByteBuf encode(R message, EnvType target) {
-        var buffer = PacketByteBufs.create();
-
-        final var messageClass = message.getClass();
-
+    private <R extends Record> IndexedSerializer<R> getSerializer(Class<?> messageClass) {
         if (!this.serializersByClass.containsKey(messageClass)) {
             throw new NetworkException("Message class '" + messageClass + "' is not registered");
         }
 
-        final IndexedSerializer<R> serializer = (IndexedSerializer<R>) this.serializersByClass.get(messageClass);
+        return (IndexedSerializer<R>) this.serializersByClass.get(messageClass);
+    }
+
+    private <R extends Record> IndexedSerializer<R> getSerializer(Class<?> messageClass, EnvType target) {
+        final IndexedSerializer<R> serializer = this.getSerializer(messageClass);
         if (serializer.handlerIndex(target) == -1) {
             throw new NetworkException("Message class '" + messageClass + "' has not handler registered for target environment " + target);
         }
 
+        return serializer;
+    }
+
+    private <R extends Record> PacketByteBuf encode(R message, EnvType target) {
+        final IndexedSerializer<R> serializer = this.getSerializer(message.getClass(), target);
+
+        if (serializer.encodingCache != null) {
+            return serializer.encodingCache.get(message, target, () -> this.encodeUncached(serializer, message, target));
+        }
+
+        return this.encodeUncached(serializer, message, target);
+    }
+
+    private <R extends Record> PacketByteBuf encodeUncached(IndexedSerializer<R> serializer, R message, EnvType target) {
+        var buffer = new PacketByteBuf(Unpooled.buffer(serializer.bufferSize(target)));
+        this.writeMessage(buffer, serializer, message, target);
+        return buffer;
+    }
+
+    private <R extends Record> void writeMessage(PacketByteBuf buffer, IndexedSerializer<R> serializer, R message, EnvType target) {
+        final int start = buffer.writerIndex();
+
         buffer.writeVarInt(serializer.handlerIndex(target));
-        serializer.serializer.write(buffer, message);
+        if (serializer.isLazy(target)) {
+            serializer.serializer.writeLazy(buffer, message);
+        } else {
+            serializer.write(buffer, message);
+        }
+
+        serializer.recordEncodedSize(buffer.writerIndex() - start);
+    }
+
+    // messages with their own executor must not be
+    // handled on the channel's executor with the batch
+    private boolean canBatch(Collection<Record> messages) {
+        for (var message : messages) {
+            if (this.getSerializer(message.getClass()).executor != null) return false;
+        }
+        return true;
+    }
+
+    private PacketByteBuf encodeServerboundBatch(Collection<Record> messages) {
+        var buffer = PacketByteBufs.create();
+        buffer.writeVarInt(BATCH_INDEX);
+        buffer.writeVarInt(messages.size());
+
+        for (var message : messages) {
+            final IndexedSerializer<Record> serializer = this.getSerializer(message.getClass(), EnvType.SERVER);
+
+            if (serializer.encodingCache != null) {
+                final var encoded = this.encode(message, EnvType.SERVER);
+                buffer.writeBytes(encoded);
+                encoded.release();
+            } else {
+                this.writeMessage(buffer, serializer, message, EnvType.SERVER);
+            }
+        }
 
         return buffer;
     }
 
+    // the buffer is retained until the packet has been written, the caller
+    // still has to release its own reference. local connections hand the packet
+    // itself to the receiving side, which is why they get a copy instead
+    private static void sendRetained(ClientConnection connection, PacketByteBuf buffer, Function<PacketByteBuf, Packet<?>> packetFactory) {
+        if (connection.isLocal()) {
+            connection.send(packetFactory.apply(PacketByteBufs.copy(buffer)));
+        } else {
+            buffer.retain();
+            connection.send(packetFactory.apply(buffer), future -> buffer.release());
+        }
+    }
+
+    private void receive(PacketByteBuf buf, EnvironmentAccess<?, ?, ?> access, EnvType side) {
+        final int handlerIndex = buf.readVarInt();
+        if (side == EnvType.SERVER && handlerIndex == BATCH_INDEX) {
+            this.receiveBatch(buf, access);
+            return;
+        }
+
+        if (!this.hasHandler(handlerIndex, side)) throw new NetworkException("Invalid handler index " + handlerIndex + " on channel " + this.packetId);
+        final var serializer = this.serializersByIndex.get(side == EnvType.CLIENT ? -handlerIndex : handlerIndex);
+
+        final var executor = serializer.executor != null ? serializer.executor : this.executor;
+        if (executor.decodeOffThread()) {
+            final var payload = PacketByteBufs.retainedSlice(buf);
+            executor.execute(access, () -> {
+                try {
+                    this.dispatch(handlerIndex, decode(serializer, payload, side), access, side);
+                } finally {
+                    payload.release();
+                }
+            });
+        } else {
+            executor.execute(access, PendingDispatch.obtain(this, handlerIndex, decode(serializer, buf, side), access, side));
+        }
+    }
+
+    private void receiveBatch(PacketByteBuf buf, EnvironmentAccess<?, ?, ?> access) {
+        if (this.executor.decodeOffThread()) {
+            final var payload = PacketByteBufs.retainedSlice(buf);
+            this.executor.execute(access, () -> {
+                try {
+                    this.dispatchBatch(this.decodeBatch(payload), access);
+                } finally {
+                    payload.release();
+                }
+            });
+        } else {
+            final var batch = this.decodeBatch(buf);
+            this.executor.execute(access, () -> this.dispatchBatch(batch, access));
+        }
+    }
+
+    private DecodedBatch decodeBatch(PacketByteBuf buf) {
+        final int count = buf.readVarInt();
+
+        // every entry takes at least one byte, so anything larger than
+        // that comes from a broken or malicious client and must not be
+        // allowed to size the arrays below
+        if (count < 0 || count > buf.readableBytes()) {
+            throw new NetworkException("Invalid message batch size " + count + " on channel " + this.packetId);
+        }
+
+        final var batch = new DecodedBatch(new int[count], new Object[count]);
+
+        try {
+            for (int i = 0; i < count; i++) {
+                batch.indices[i] = buf.readVarInt();
+
+                // only serverbound handlers may be invoked from a batch, negative
+                // indices belong to clientbound messages and 0 to the batch itself
+                if (!this.hasHandler(batch.indices[i], EnvType.SERVER)) {
+                    throw new NetworkException("Invalid handler index " + batch.indices[i] + " in message batch on channel " + this.packetId);
+                }
+
+                batch.messages[i] = decode(this.serializersByIndex.get(batch.indices[i]), buf, EnvType.SERVER);
+            }
+        } catch (RuntimeException e) {
+            releaseLazy(batch.messages, 0);
+            throw e;
+        }
+
+        return batch;
+    }
+
+    private void dispatchBatch(DecodedBatch batch, EnvironmentAccess<?, ?, ?> access) {
+        int dispatched = 0;
+        try {
+            while (dispatched < batch.indices.length) {
+                final int i = dispatched++;
+
+                final var executor = this.serializersByIndex.get(batch.indices[i]).executor;
+                if (executor != null) {
+                    executor.execute(access, PendingDispatch.obtain(this, batch.indices[i], batch.messages[i], access, EnvType.SERVER));
+                } else {
+                    this.dispatch(batch.indices[i], batch.messages[i], access, EnvType.SERVER);
+                }
+            }
+        } finally {
+            // a throwing handler must not leak the
+            // views of the messages after it
+            releaseLazy(batch.messages, dispatched);
+        }
+    }
+
+    private boolean hasHandler(int handlerIndex, EnvType side) {
+        if (handlerIndex <= 0) return false;
+
+        return side == EnvType.CLIENT
+                ? handlerIndex < this.clientHandlers.size() && (this.clientHandlers.get(handlerIndex) != null || this.lazyClientHandlers.containsKey(handlerIndex))
+                : handlerIndex < this.serverHandlers.size() && (this.serverHandlers.get(handlerIndex) != null || this.lazyServerHandlers.containsKey(handlerIndex));
+    }
+
+    private static void releaseLazy(Object[] messages, int from) {
+        for (int i = from; i < messages.length; i++) {
+            if (messages[i] instanceof LazyRecord<?> lazyMessage) lazyMessage.release();
+        }
+    }
+
+    // access objects are cached on the connection, the
+    // player is compared since it changes on respawn
+    private static ServerAccess accessOf(ServerPlayerEntity player) {
+        final var connection = (OwoClientConnectionExtension) player.networkHandler.connection;
+        if (connection.owo$getEnvironmentAccess() instanceof ServerAccess access && access.player() == player) return access;
+
+        final var access = new ServerAccess(player);
+        connection.owo$setEnvironmentAccess(access);
+        return access;
+    }
+
+    @Environment(EnvType.CLIENT)
+    private static ClientAccess accessOf(ClientPlayNetworkHandler handler) {
+        final var connection = (OwoClientConnectionExtension) handler.getConnection();
+        if (connection.owo$getEnvironmentAccess() instanceof ClientAccess access && access.netHandler() == handler) return access;
+
+        final var access = new ClientAccess(handler);
+        connection.owo$setEnvironmentAccess(access);
+        return access;
+    }
+
+    private static Object decode(IndexedSerializer<?> serializer, PacketByteBuf buf, EnvType side) {
+        return serializer.isLazy(side) ? serializer.serializer.readLazy(buf) : serializer.read(buf);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void dispatch(int handlerIndex, Object message, EnvironmentAccess<?, ?, ?> access, EnvType side) {
+        if (message instanceof LazyRecord<?> lazyMessage) {
+            try {
+                final LazyChannelHandler handler = side == EnvType.CLIENT ? this.lazyClientHandlers.get(handlerIndex) : this.lazyServerHandlers.get(handlerIndex);
+                handler.handle(lazyMessage, access);
+            } finally {
+                lazyMessage.release();
+            }
+        } else {
+            final ChannelHandler handler = side == EnvType.CLIENT ? this.clientHandlers.get(handlerIndex) : this.serverHandlers.get(handlerIndex);
+            handler.handle((Record) message, access);
+        }
+    }
+
+    private void flushCoalesced() {
+        if (this.pendingCoalesced.isEmpty()) return;
+
+        // the same message is often pending for multiple players,
+        // only encode each instance once
+        final var encoded = new IdentityHashMap<Record, PacketByteBuf>();
+        this.pendingCoalesced.forEach((handler, messages) -> {
+            for (var message : messages.values()) {
+                final var buffer = encoded.computeIfAbsent(message, m -> this.encode(m, EnvType.CLIENT));
+
+                NetworkHealth.recordSent(handler.player, buffer.readableBytes());
+                sendRetained(handler.connection, buffer, data -> ServerPlayNetworking.createS2CPacket(this.packetId, data));
+            }
+        });
+
+        encoded.values().forEach(PacketByteBuf::release);
+        this.pendingCoalesced.clear();
+    }
+
     public class ClientHandle {
 
+        private final Map<Object, Record> queued = new LinkedHashMap<>();
+
         /**
          * Sends the given message to the server
          *
          * @param message The message to send
          * @see #send(Record[])
+         * @see #queue(Record)
          */
         public <R extends Record> void send(R message) {
-            ClientPlayNetworking.send(OwoNetChannel.this.packetId, OwoNetChannel.this.encode(message, EnvType.SERVER));
+            this.sendBuffer(OwoNetChannel.this.encode(message, EnvType.SERVER));
         }
 
         /**
          * Sends the given messages to the server
+         * in a single packet, where they are handled
+         * in order within the same server task
          *
          * @param messages The messages to send
          */
         @SafeVarargs
         public final <R extends Record> void send(R... messages) {
-            for (R message : messages) send(message);
+            if (messages.length == 0) return;
+
+            final var messageList = Arrays.<Record>asList(messages);
+            if (messages.length == 1 || !OwoNetChannel.this.canBatch(messageList)) {
+                for (var message : messages) this.send(message);
+            } else {
+                this.sendBuffer(OwoNetChannel.this.encodeServerboundBatch(messageList));
+            }
+        }
+
+        /**
+         * Queues the given message to be sent to the server at the
+         * end of the current client tick, together with all other
+         * messages queued on this channel during the tick
+         * <p>
+         * If the message class has a {@link CoalescingKey}, a queued
+         * message with the same key is replaced by this one
+         *
+         * @param message The message to queue
+         */
+        public <R extends Record> void queue(R message) {
+            final IndexedSerializer<R> serializer = OwoNetChannel.this.getSerializer(message.getClass(), EnvType.SERVER);
+
+            final Object key = serializer.coalescingKey != null
+                    ? new CoalescedKey(message.getClass(), serializer.coalescingKey.apply(message))
+                    : new Object();
+
+            this.queued.put(key, message);
+        }
+
+        private void flushQueued() {
+            if (this.queued.isEmpty()) return;
+
+            if (this.queued.size() == 1 || !OwoNetChannel.this.canBatch(this.queued.values())) {
+                for (var message : this.queued.values()) this.send(message);
+            } else {
+                this.sendBuffer(OwoNetChannel.this.encodeServerboundBatch(this.queued.values()));
+            }
+
+            this.queued.clear();
+        }
+
+        private void sendBuffer(PacketByteBuf buffer) {
+            final var networkHandler = MinecraftClient.getInstance().getNetworkHandler();
+            if (networkHandler == null) {
+                buffer.release();
+                throw new IllegalStateException("Cannot send packets when not in game!");
+            }
+
+            sendRetained(networkHandler.getConnection(), buffer, data -> ClientPlayNetworking.createC2SPacket(OwoNetChannel.this.packetId, data));
+            buffer.release();
         }
     }
 
@@ -407,12 +818,16 @@ public class OwoNetChannel {
          * Sends the given message to the configured target(s)
          * <b>Resets the target(s) after sending - this cannot be used
          * for multiple messages on the same handle</b>
+         * <p>
+         * If the message class has a {@link CoalescingKey}, the message
+         * is only queued and sent at the end of the current server tick,
+         * unless it is replaced by a newer message with the same key before that
          *
          * @param message The message to send
          * @see #send(Record[])
          */
         public <R extends Record> void send(R message) {
-            this.targets.forEach(player -> ServerPlayNetworking.send(player, OwoNetChannel.this.packetId, OwoNetChannel.this.encode(message, EnvType.CLIENT)));
+            this.sendToTargets(message);
             this.targets = null;
         }
 
@@ -425,20 +840,38 @@ public class OwoNetChannel {
          */
         @SafeVarargs
         public final <R extends Record> void send(R... messages) {
-            this.targets.forEach(player -> {
-                for (R message : messages) {
-                    ServerPlayNetworking.send(player, OwoNetChannel.this.packetId, OwoNetChannel.this.encode(message, EnvType.CLIENT));
-                }
-            });
+            for (R message : messages) this.sendToTargets(message);
             this.targets = null;
         }
+
+        private <R extends Record> void sendToTargets(R message) {
+            if (this.targets.isEmpty()) return;
+
+            final IndexedSerializer<R> serializer = OwoNetChannel.this.getSerializer(message.getClass(), EnvType.CLIENT);
+            if (serializer.coalescingKey != null) {
+                final var key = new CoalescedKey(message.getClass(), serializer.coalescingKey.apply(message));
+                for (var player : this.targets) {
+                    OwoNetChannel.this.pendingCoalesced.computeIfAbsent(player.networkHandler, h -> new LinkedHashMap<>()).put(key, message);
+                }
+                return;
+            }
+
+            final var buffer = OwoNetChannel.this.encode(message, EnvType.CLIENT);
+            for (var player : this.targets) {
+                NetworkHealth.recordSent(player, buffer.readableBytes());
+                sendRetained(player.networkHandler.connection, buffer, data -> ServerPlayNetworking.createS2CPacket(OwoNetChannel.this.packetId, data));
+            }
+
+            buffer.release();
+        }
     }
 
     public interface ChannelHandler<R extends Record, E extends EnvironmentAccess<?, ?, ?>> {
 
         /**
          * Executed on the game thread to handle the incoming
-         * message - this can safely modify game state
+         * message - this can safely modify game state, unless
+         * the channel uses a different {@link HandlerExecutor}
          *
          * @param message The message that was received
          * @param access  The {@link EnvironmentAccess} used to obtain references
@@ -447,6 +880,23 @@ public class OwoNetChannel {
         void handle(R message, E access);
     }
 
+    public interface LazyChannelHandler<R extends Record, E extends EnvironmentAccess<?, ?, ?>> {
+
+        /**
+         * Executed on the game thread to handle the incoming
+         * message - this can safely modify game state, unless
+         * the channel uses a different {@link HandlerExecutor}
+         * <p>
+         * The view is released once this returns, so
+         * components must be accessed before that
+         *
+         * @param message A view of the message that was received
+         * @param access  The {@link EnvironmentAccess} used to obtain references
+         *                to the execution environment
+         */
+        void handle(LazyRecord<R> message, E access);
+    }
+
     /**
      * A simple wrapper that provides access to the environment a packet
      * is being received / message is being handled in
@@ -484,30 +934,230 @@ public class OwoNetChannel {
         }
     }
 
+    private record CoalescedKey(Class<?> messageClass, Object key) {}
+
+    private record DecodedBatch(int[] indices, Object[] messages) {}
+
+    /**
+     * A pooled task which dispatches a single decoded message,
+     * used instead of a capturing lambda for every message
+     */
+    private static final class PendingDispatch implements Runnable {
+
+        private static final ArrayBlockingQueue<PendingDispatch> POOL = new ArrayBlockingQueue<>(256);
+
+        private OwoNetChannel channel;
+        private int handlerIndex;
+        private Object message;
+        private EnvironmentAccess<?, ?, ?> access;
+        private EnvType side;
+
+        static PendingDispatch obtain(OwoNetChannel channel, int handlerIndex, Object message, EnvironmentAccess<?, ?, ?> access, EnvType side) {
+            var dispatch = POOL.poll();
+            if (dispatch == null) dispatch = new PendingDispatch();
+
+            dispatch.channel = channel;
+            dispatch.handlerIndex = handlerIndex;
+            dispatch.message = message;
+            dispatch.access = access;
+            dispatch.side = side;
+            return dispatch;
+        }
+
+        @Override
+        public void run() {
+            final var channel = this.channel;
+            final int handlerIndex = this.handlerIndex;
+            final var message = this.message;
+            final var access = this.access;
+            final var side = this.side;
+
+            // release before dispatching, so that the
+            // entry can be reused if the handler throws
+            this.channel = null;
+            this.message = null;
+            this.access = null;
+            this.side = null;
+            POOL.offer(this);
+
+            channel.dispatch(handlerIndex, message, access, side);
+        }
+    }
+
+    /**
+     * A bounded LRU cache of encoded messages. The cached buffers are
+     * never handed out directly, only as retained duplicates with independent
+     * indices which the caller must release once the message has been sent
+     * <p>
+     * The cache itself holds one reference to each buffer,
+     * which is released when the entry is evicted
+     */
+    static final class EncodingCache {
+
+        private final Map<Object, PacketByteBuf> clientbound;
+        private final Map<Object, PacketByteBuf> serverbound;
+        private final boolean byIdentity;
+
+        private EncodingCache(int size, boolean byIdentity) {
+            this.clientbound = createLruMap(size);
+            this.serverbound = createLruMap(size);
+            this.byIdentity = byIdentity;
+        }
+
+        private static Map<Object, PacketByteBuf> createLruMap(int size) {
+            return new LinkedHashMap<>(16, .75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Object, PacketByteBuf> eldest) {
+                    if (this.size() <= size) return false;
+
+                    eldest.getValue().release();
+                    return true;
+                }
+            };
+        }
+
+        public synchronized PacketByteBuf get(Record message, EnvType target, Supplier<PacketByteBuf> encoder) {
+            final var cache = target == EnvType.CLIENT ? this.clientbound : this.serverbound;
+            final Object key = this.byIdentity ? new IdentityKey(message) : message;
+
+            var encoded = cache.get(key);
+            if (encoded == null) {
+                encoded = encoder.get();
+                cache.put(key, encoded);
+            }
+
+            return new PacketByteBuf(encoded.retainedDuplicate());
+        }
+
+        private record IdentityKey(Record message) {
+            @Override
+            public boolean equals(Object obj) {
+                return obj instanceof IdentityKey other && other.message == this.message;
+            }
+
+            @Override
+            public int hashCode() {
+                return System.identityHashCode(this.message);
+            }
+        }
+    }
+
     static {
         OwoHandshake.enable();
 
+        ServerTickEvents.END_SERVER_TICK.register(server -> {
+            for (OwoNetChannel channel : OwoNetChannel.REGISTERED_CHANNELS.values()) {
+                channel.flushCoalesced();
+            }
+        });
+
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> {
+            for (OwoNetChannel channel : OwoNetChannel.REGISTERED_CHANNELS.values()) {
+                channel.pendingCoalesced.remove(handler);
+            }
+        });
+
         OwoFreezer.registerFreezeCallback(() -> {
             for (OwoNetChannel channel : OwoNetChannel.REGISTERED_CHANNELS.values()) {
                 channel.verify();
             }
         });
+
+        if (FabricLoader.getInstance().getEnvironmentType() == EnvType.CLIENT) {
+            ClientTickEvents.END_CLIENT_TICK.register(client -> {
+                if (client.getNetworkHandler() == null) return;
+
+                for (OwoNetChannel channel : OwoNetChannel.REGISTERED_CHANNELS.values()) {
+                    if (channel.clientHandle != null) channel.clientHandle.flushQueued();
+                }
+            });
+
+            ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> {
+                for (OwoNetChannel channel : OwoNetChannel.REGISTERED_CHANNELS.values()) {
+                    if (channel.clientHandle != null) channel.clientHandle.queued.clear();
+                }
+            });
+        }
     }
 
     static final class IndexedSerializer<R extends Record> {
+        private static final int INITIAL_SIZE_ESTIMATE = 64;
+
         private int clientHandlerIndex = -1;
         private int serverHandlerIndex = -1;
 
+        private boolean clientLazy = false;
+        private boolean serverLazy = false;
+
+        // a moving average of the encoded message size, only
+        // used as a hint so races on this are harmless
+        private int sizeEstimate = INITIAL_SIZE_ESTIMATE;
+
         final RecordSerializer<R> serializer;
+        final @Nullable Function<R, Object> coalescingKey;
+        final @Nullable EncodingCache encodingCache;
+        final boolean deduplicate;
+        @Nullable HandlerExecutor executor = null;
 
         private IndexedSerializer(RecordSerializer<R> serializer) {
             this.serializer = serializer;
+            this.coalescingKey = createCoalescingKey(serializer.getRecordClass());
+
+            final var memoized = serializer.getRecordClass().getAnnotation(MemoizedEncoding.class);
+            this.encodingCache = memoized != null ? new EncodingCache(memoized.size(), memoized.byIdentity()) : null;
+
+            this.deduplicate = serializer.getRecordClass().isAnnotationPresent(Deduplicate.class);
+        }
+
+        public R read(PacketByteBuf buffer) {
+            if (!this.deduplicate) return this.serializer.read(buffer);
+
+            try (var table = DedupTable.open()) {
+                return this.serializer.read(buffer);
+            }
+        }
+
+        public void write(PacketByteBuf buffer, R message) {
+            if (!this.deduplicate) {
+                this.serializer.write(buffer, message);
+                return;
+            }
+
+            try (var table = DedupTable.open()) {
+                this.serializer.write(buffer, message);
+            }
         }
 
         public static <R extends Record> IndexedSerializer<R> create(RecordSerializer<R> serializer, int index, EnvType target) {
             return new IndexedSerializer<>(serializer).setHandlerIndex(index, target);
         }
 
+        private static <R extends Record> @Nullable Function<R, Object> createCoalescingKey(Class<R> recordClass) {
+            final var keyAccessors = Arrays.stream(recordClass.getRecordComponents())
+                    .filter(component -> component.isAnnotationPresent(CoalescingKey.class))
+                    .map(RecordComponent::getAccessor)
+                    .toArray(Method[]::new);
+
+            if (keyAccessors.length == 0) return null;
+            if (keyAccessors.length == 1) return message -> getComponent(message, keyAccessors[0]);
+
+            return message -> {
+                final var key = new Object[keyAccessors.length];
+                for (int i = 0; i < keyAccessors.length; i++) {
+                    key[i] = getComponent(message, keyAccessors[i]);
+                }
+                return Arrays.asList(key);
+            };
+        }
+
+        private static Object getComponent(Record record, Method accessor) {
+            try {
+                return accessor.invoke(record);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new NetworkException("Unable to read coalescing key of message class '" + record.getClass().getName() + "'");
+            }
+        }
+
         public IndexedSerializer<R> setHandlerIndex(int index, EnvType target) {
             switch (target) {
                 case CLIENT -> this.clientHandlerIndex = index;
@@ -522,6 +1172,38 @@ public class OwoNetChannel {
                 case SERVER -> serverHandlerIndex;
             };
         }
+
+        public void setLazy(EnvType target) {
+            switch (target) {
+                case CLIENT -> this.clientLazy = true;
+                case SERVER -> this.serverLazy = true;
+            }
+        }
+
+        public boolean isLazy(EnvType target) {
+            return switch (target) {
+                case CLIENT -> clientLazy;
+                case SERVER -> serverLazy;
+            };
+        }
+
+        /**
+         * @return The capacity a buffer for encoding a message of this type
+         * should be allocated with - exact if the record has a fixed-size layout
+         */
+        public int bufferSize(EnvType target) {
+            if (serializer.fixedSize() != -1 && !isLazy(target)) {
+                return PacketByteBuf.getVarIntLength(handlerIndex(target)) + serializer.fixedSize();
+            }
+
+            // leave some headroom so that messages slightly
+            // above the average don't immediately reallocate
+            return this.sizeEstimate + (this.sizeEstimate >> 2);
+        }
+
+        public void recordEncodedSize(int size) {
+            this.sizeEstimate = Math.max(1, this.sizeEstimate + ((size - this.sizeEstimate) >> 3));
+        }
     }
 }
 
@@ -0,0 +1,20 @@
+package io.wispforest.owo.network.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a message class as coalescible by the annotated record
+ * component. Messages of such a class sent through a
+ * {@link io.wispforest.owo.network.OwoNetChannel.ServerHandle} are not
+ * sent immediately - instead, only the latest pending message per
+ * key and player is sent at the end of the server tick
+ * <p>
+ * If multiple components are annotated, they form a composite key
+ */
+@Target(ElementType.RECORD_COMPONENT)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CoalescingKey {
+}
@@ -0,0 +1,23 @@
+package io.wispforest.owo.network.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Makes {@link io.wispforest.owo.network.OwoNetChannel} deduplicate
+ * {@link net.minecraft.item.ItemStack}s and {@link net.minecraft.nbt.NbtCompound}s
+ * within each message of the annotated class - only the first occurrence of
+ * a value is written in full, all equal ones after it are written as a
+ * reference to the first
+ * <p>
+ * Useful for messages like inventory snapshots which often contain the same
+ * stack many times. Has no effect on messages registered with a lazy handler
+ *
+ * @see io.wispforest.owo.network.serialization.DedupTable
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Deduplicate {
+}
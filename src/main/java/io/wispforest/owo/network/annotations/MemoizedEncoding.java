@@ -0,0 +1,33 @@
+package io.wispforest.owo.network.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Makes {@link io.wispforest.owo.network.OwoNetChannel} remember the encoded
+ * bytes of messages of the annotated class, so that re-sending an equal message
+ * hands out a view of the cached bytes instead of serializing it again
+ * <p>
+ * Only use this on immutable messages which are re-sent unchanged
+ * for long periods of time, like configuration snapshots
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface MemoizedEncoding {
+
+    /**
+     * @return The maximum amount of encoded messages to keep,
+     * the least recently used ones are evicted first
+     */
+    int size() default 8;
+
+    /**
+     * @return {@code true} if messages should be matched by identity
+     * instead of {@link Object#equals(Object)}, which is cheaper
+     * for large records that are kept around as a single instance
+     */
+    boolean byIdentity() default false;
+
+}
@@ -0,0 +1,37 @@
+package io.wispforest.owo.network.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a collection of {@link net.minecraft.util.math.BlockPos},
+ * {@link net.minecraft.util.math.ChunkPos} or {@link net.minecraft.util.math.Vec3d}
+ * record component to be encoded as zigzag-varint deltas between consecutive
+ * entries instead of as full positions, which is a lot smaller for
+ * positions that are close together
+ * <p>
+ * {@link net.minecraft.util.math.Vec3d} entries are quantized
+ * to a precision of {@code 1/4096} blocks
+ *
+ * @see io.wispforest.owo.network.serialization.PositionCollectionSerializer
+ */
+@Target(ElementType.RECORD_COMPONENT)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface PackedPositions {
+
+    /**
+     * @return {@code true} if the positions should be sorted before encoding,
+     * which shrinks the deltas but does not preserve the original order
+     */
+    boolean sort() default false;
+
+    /**
+     * @return {@code true} if block positions which all lie within the same
+     * chunk section should be encoded as a single section position followed
+     * by two bytes per entry
+     */
+    boolean sectionRelative() default true;
+
+}
@@ -0,0 +1,190 @@
+package io.wispforest.owo.network.replication;
+
+import io.wispforest.owo.network.ClientAccess;
+import io.wispforest.owo.network.serialization.RecordSerializer;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.networking.v1.PacketByteBufs;
+import net.fabricmc.fabric.api.networking.v1.PlayerLookup;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.chunk.WorldChunk;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.*;
+
+/**
+ * Synchronizes the client-visible state of {@link SyncedBlockEntity}s
+ * as compact record deltas. Call {@link #markDirty(BlockEntity)} whenever
+ * the state might have changed - at the end of the world tick, the state
+ * of each dirty block entity is compared against the last state that was sent
+ * and only the changed components are sent. All changes in one chunk are
+ * batched into a single packet to the players tracking that chunk
+ * <p>
+ * When a player is sent a chunk, the full state of all synchronized block
+ * entities in it follows in the same compact format, directly after the
+ * chunk data - it does not need to be part of {@link BlockEntity#toInitialChunkDataNbt()}
+ */
+public final class BlockEntitySync {
+
+    private static final Map<ServerWorld, Set<BlockEntity>> DIRTY = new HashMap<>();
+    private static final Map<BlockEntity, Record> LAST_SENT = new WeakHashMap<>();
+
+    private BlockEntitySync() {}
+
+    /**
+     * Marks the given block entity for synchronization
+     * at the end of the current world tick
+     *
+     * @param blockEntity The block entity to synchronize
+     */
+    public static <B extends BlockEntity & SyncedBlockEntity<?>> void markDirty(B blockEntity) {
+        if (!(blockEntity.getWorld() instanceof ServerWorld world)) return;
+        DIRTY.computeIfAbsent(world, w -> new LinkedHashSet<>()).add(blockEntity);
+    }
+
+    /**
+     * Immediately sends the full state of the given
+     * block entity to the given player
+     *
+     * @param player      The player to synchronize with
+     * @param blockEntity The block entity to synchronize
+     */
+    @SuppressWarnings("unchecked")
+    public static <B extends BlockEntity & SyncedBlockEntity<?>> void syncFull(ServerPlayerEntity player, B blockEntity) {
+        if (!Replication.CHANNEL.canSendToPlayer(player)) return;
+
+        final var synced = (SyncedBlockEntity<Record>) blockEntity;
+        final var serializer = RecordSerializer.create(synced.syncStateClass());
+
+        final var batch = new ChunkBatch();
+        batch.add(blockEntity.getPos(), serializer, synced.createSyncState(), fullMask(serializer));
+
+        Replication.CHANNEL.serverHandle(player).send(batch.toDelta(new ChunkPos(blockEntity.getPos()).toLong()));
+    }
+
+    @SuppressWarnings("unchecked")
+    static void onChunkSent(ServerPlayerEntity player, WorldChunk chunk) {
+        final var batch = new ChunkBatch();
+
+        for (var blockEntity : chunk.getBlockEntities().values()) {
+            if (!(blockEntity instanceof SyncedBlockEntity<?>)) continue;
+
+            final var synced = (SyncedBlockEntity<Record>) blockEntity;
+            final var serializer = RecordSerializer.create(synced.syncStateClass());
+
+            batch.add(blockEntity.getPos(), serializer, synced.createSyncState(), fullMask(serializer));
+        }
+
+        if (batch.count == 0) return;
+        Replication.CHANNEL.serverHandle(player).send(batch.toDelta(chunk.getPos().toLong()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void flush(ServerWorld world) {
+        final var dirty = DIRTY.remove(world);
+        if (dirty == null) return;
+
+        final var chunks = new Long2ObjectLinkedOpenHashMap<ChunkBatch>();
+
+        for (var blockEntity : dirty) {
+            if (blockEntity.isRemoved() || blockEntity.getWorld() != world) continue;
+
+            final var synced = (SyncedBlockEntity<Record>) blockEntity;
+            final var serializer = RecordSerializer.create(synced.syncStateClass());
+
+            final var state = synced.createSyncState();
+            final var previous = LAST_SENT.get(blockEntity);
+
+            final long mask = previous == null ? fullMask(serializer) : serializer.diff(previous, state);
+            if (mask == 0) continue;
+
+            LAST_SENT.put(blockEntity, state);
+
+            final var pos = blockEntity.getPos();
+            chunks.computeIfAbsent(ChunkPos.toLong(pos.getX() >> 4, pos.getZ() >> 4), value -> new ChunkBatch()).add(pos, serializer, state, mask);
+        }
+
+        chunks.long2ObjectEntrySet().fastForEach(entry -> {
+            final var chunkPos = new ChunkPos(entry.getLongKey());
+            final var receivers = new ArrayList<ServerPlayerEntity>();
+
+            for (var player : PlayerLookup.tracking(world, chunkPos)) {
+                if (Replication.CHANNEL.canSendToPlayer(player)) receivers.add(player);
+            }
+
+            if (receivers.isEmpty()) return;
+            Replication.CHANNEL.serverHandle(receivers).send(entry.getValue().toDelta(entry.getLongKey()));
+        });
+    }
+
+    private static long fullMask(RecordSerializer<?> serializer) {
+        return serializer.componentCount() == Long.SIZE ? -1L : (1L << serializer.componentCount()) - 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    static void apply(ChunkDelta message, ClientAccess access) {
+        final var world = access.runtime().world;
+        final var chunkPos = new ChunkPos(message.chunkPos());
+        final var entries = message.entries();
+
+        final var pos = new BlockPos.Mutable();
+        for (int count = entries.readVarInt(); count > 0; count--) {
+            final int horizontal = entries.readUnsignedByte();
+            final int y = entries.readVarInt();
+            pos.set(chunkPos.getStartX() + (horizontal >> 4), y >>> 1 ^ -(y & 1), chunkPos.getStartZ() + (horizontal & 15));
+
+            final int length = entries.readInt();
+            final int end = entries.readerIndex() + length;
+
+            // skip entries for block entities the client does not know about,
+            // their full state will be sent together with the chunk anyways
+            if (world.getBlockEntity(pos) instanceof SyncedBlockEntity<?> blockEntity) {
+                final var synced = (SyncedBlockEntity<Record>) blockEntity;
+                synced.applySyncState(RecordSerializer.create(synced.syncStateClass()).readDelta(entries, synced.createSyncState()));
+            }
+
+            entries.readerIndex(end);
+        }
+    }
+
+    static {
+        ServerTickEvents.END_WORLD_TICK.register(BlockEntitySync::flush);
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> DIRTY.clear());
+    }
+
+    private static final class ChunkBatch {
+        private final PacketByteBuf entries = PacketByteBufs.create();
+        private int count = 0;
+
+        private void add(BlockPos pos, RecordSerializer<Record> serializer, Record state, long mask) {
+            this.entries.writeByte((pos.getX() & 15) << 4 | (pos.getZ() & 15));
+
+            // zigzag-encoded, negative heights would otherwise take five bytes
+            this.entries.writeVarInt(pos.getY() << 1 ^ pos.getY() >> 31);
+
+            final int lengthIndex = this.entries.writerIndex();
+            this.entries.writeInt(0);
+
+            serializer.writeDelta(this.entries, state, mask);
+            this.entries.setInt(lengthIndex, this.entries.writerIndex() - lengthIndex - 4);
+
+            this.count++;
+        }
+
+        private ChunkDelta toDelta(long chunkPos) {
+            final var buffer = PacketByteBufs.create();
+            buffer.writeVarInt(this.count);
+            buffer.writeBytes(this.entries);
+            return new ChunkDelta(chunkPos, buffer);
+        }
+    }
+
+    @ApiStatus.Internal
+    public record ChunkDelta(long chunkPos, PacketByteBuf entries) {}
+}
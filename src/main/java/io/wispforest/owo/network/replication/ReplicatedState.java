@@ -0,0 +1,202 @@
+package io.wispforest.owo.network.replication;
+
+import io.wispforest.owo.network.serialization.PacketBufSerializer;
+import net.minecraft.network.PacketByteBuf;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * A set of properties that is replicated from the server to
+ * a client-side mirror. Each property tracks whether it changed
+ * since the last synchronization, and only changed properties are
+ * sent - encoded as a bitmask of changed properties followed by their values
+ * <p>
+ * Properties must be declared in the same order on both
+ * client and server, ideally in the constructor of the
+ * object holding the state. A state can hold at most 64 properties
+ * <p>
+ * Property values are serialized with the {@link PacketBufSerializer} system,
+ * so should a property type not be supported, register your own
+ * serializer with {@link PacketBufSerializer#register(Class, BiConsumer, Function)}
+ *
+ * @see Replication
+ * @see ReplicatedStateHolder
+ */
+public class ReplicatedState {
+
+    private final List<Property<?>> properties = new ArrayList<>();
+    private long dirtyMask = 0;
+
+    private @Nullable Runnable updateListener = null;
+
+    /**
+     * Declares a new property with the given type and initial value
+     *
+     * @param clazz   The type of the property
+     * @param initial The initial value of the property
+     * @param <T>     The type of the property
+     * @return The declared property
+     */
+    public <T> Property<T> property(Class<T> clazz, T initial) {
+        return property(PacketBufSerializer.get(clazz), initial);
+    }
+
+    /**
+     * Declares a new property which is serialized
+     * with the given serializer
+     *
+     * @param serializer The serializer to use for the property's values
+     * @param initial    The initial value of the property
+     * @param <T>        The type of the property
+     * @return The declared property
+     */
+    public <T> Property<T> property(PacketBufSerializer<T> serializer, T initial) {
+        if (this.properties.size() == Long.SIZE) {
+            throw new IllegalStateException("A replicated state can hold at most " + Long.SIZE + " properties");
+        }
+
+        var property = new Property<>(this.properties.size(), serializer, initial);
+        this.properties.add(property);
+
+        // new properties start out dirty so that the
+        // first synchronization sends the full state
+        this.dirtyMask |= 1L << property.index;
+
+        return property;
+    }
+
+    /**
+     * Sets the code that is run on the client
+     * after a delta update has been applied
+     *
+     * @param listener The code to run
+     */
+    public void onUpdate(Runnable listener) {
+        this.updateListener = listener;
+    }
+
+    /**
+     * @return {@code true} if any property changed
+     * since the last synchronization
+     */
+    public boolean isDirty() {
+        return this.dirtyMask != 0;
+    }
+
+    /**
+     * Marks all properties as changed, making the
+     * next synchronization send the full state
+     */
+    public void markAllDirty() {
+        this.dirtyMask = this.properties.size() == Long.SIZE ? -1L : (1L << this.properties.size()) - 1;
+    }
+
+    /**
+     * Writes all changed properties into the given
+     * buffer and resets their dirty state
+     *
+     * @param buffer The buffer to write into
+     */
+    @ApiStatus.Internal
+    public void writeDelta(PacketByteBuf buffer) {
+        this.write(buffer, this.dirtyMask);
+        this.dirtyMask = 0;
+    }
+
+    /**
+     * Writes all properties into the given buffer
+     * without modifying their dirty state
+     *
+     * @param buffer The buffer to write into
+     */
+    @ApiStatus.Internal
+    public void writeFull(PacketByteBuf buffer) {
+        this.write(buffer, this.properties.size() == Long.SIZE ? -1L : (1L << this.properties.size()) - 1);
+    }
+
+    /**
+     * Applies the delta contained in the given buffer
+     *
+     * @param buffer The buffer to read from
+     */
+    @ApiStatus.Internal
+    public void readDelta(PacketByteBuf buffer) {
+        long mask = buffer.readVarLong();
+
+        while (mask != 0) {
+            int index = Long.numberOfTrailingZeros(mask);
+            mask &= mask - 1;
+
+            if (index >= this.properties.size()) {
+                throw new IllegalStateException("Received update for unknown property " + index + " - are properties declared on both sides?");
+            }
+
+            this.properties.get(index).read(buffer);
+        }
+
+        if (this.updateListener != null) this.updateListener.run();
+    }
+
+    private void write(PacketByteBuf buffer, long mask) {
+        buffer.writeVarLong(mask);
+
+        while (mask != 0) {
+            int index = Long.numberOfTrailingZeros(mask);
+            mask &= mask - 1;
+
+            this.properties.get(index).write(buffer);
+        }
+    }
+
+    public final class Property<T> {
+
+        private final int index;
+        private final PacketBufSerializer<T> serializer;
+        private T value;
+
+        private Property(int index, PacketBufSerializer<T> serializer, T initial) {
+            this.index = index;
+            this.serializer = serializer;
+            this.value = initial;
+        }
+
+        public T get() {
+            return this.value;
+        }
+
+        /**
+         * Sets the value of this property, marking it
+         * as changed if the new value is not equal to the current one
+         *
+         * @param value The new value
+         */
+        public void set(T value) {
+            if (Objects.equals(this.value, value)) return;
+
+            this.value = value;
+            this.markDirty();
+        }
+
+        /**
+         * Marks this property as changed. Call this after
+         * mutating the current value in-place
+         */
+        public void markDirty() {
+            ReplicatedState.this.dirtyMask |= 1L << this.index;
+        }
+
+        private void write(PacketByteBuf buffer) {
+            this.serializer.serializer().accept(buffer, this.value);
+        }
+
+        private void read(PacketByteBuf buffer) {
+            this.value = this.serializer.deserializer().apply(buffer);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package io.wispforest.owo.network.replication;
+
+/**
+ * An object which holds a {@link ReplicatedState}. Implement
+ * this on a {@link net.minecraft.block.entity.BlockEntity},
+ * {@link net.minecraft.entity.Entity} or {@link net.minecraft.screen.ScreenHandler}
+ * to have its state replicated by {@link Replication}
+ */
+public interface ReplicatedStateHolder {
+
+    /**
+     * @return The replicated state of this object, this must
+     * always return the same instance
+     */
+    ReplicatedState replicatedState();
+
+}
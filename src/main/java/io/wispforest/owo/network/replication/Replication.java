@@ -0,0 +1,233 @@
+package io.wispforest.owo.network.replication;
+
+import io.wispforest.owo.network.ClientAccess;
+import io.wispforest.owo.network.OwoNetChannel;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.networking.v1.EntityTrackingEvents;
+import net.fabricmc.fabric.api.networking.v1.PacketByteBufs;
+import net.fabricmc.fabric.api.networking.v1.PlayerLookup;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.entity.Entity;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.screen.ScreenHandler;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.chunk.WorldChunk;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Replicates the {@link ReplicatedState} of block entities, entities
+ * and screen handlers to the clients watching them. Only properties
+ * which changed since the last synchronization are sent
+ * <p>
+ * Call the respective {@code sync} method whenever the state should
+ * be synchronized, usually at the end of the holder's tick. Entities
+ * automatically receive their full state when a player starts tracking them and
+ * block entities when a player is sent the chunk they are in, screen
+ * handlers send their full state on their first synchronization
+ * <p>
+ * Replication uses an optional channel, players which do not
+ * have oωo installed are skipped
+ *
+ * @see ReplicatedStateHolder
+ */
+public final class Replication {
+
+    static final OwoNetChannel CHANNEL = OwoNetChannel.createOptional(new Identifier("owo", "replication"));
+    private static final List<Runnable> PENDING_FULL_SYNCS = new ArrayList<>();
+    private static final Map<ScreenHandler, ReplicatedState> ATTACHED_SCREEN_STATES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private Replication() {}
+
+    /**
+     * Sends the changed properties of the given block
+     * entity to all players tracking it
+     *
+     * @param blockEntity The block entity to synchronize
+     */
+    public static <B extends BlockEntity & ReplicatedStateHolder> void sync(B blockEntity) {
+        final var state = blockEntity.replicatedState();
+        if (!state.isDirty()) return;
+
+        final var delta = PacketByteBufs.create();
+        state.writeDelta(delta);
+
+        CHANNEL.serverHandle(receivers(PlayerLookup.tracking(blockEntity))).send(new BlockEntityDelta(blockEntity.getPos(), delta));
+    }
+
+    /**
+     * Sends the full state of the given block entity to the given
+     * player, for example when they open the block entity's screen
+     *
+     * @param player      The player to synchronize with
+     * @param blockEntity The block entity to synchronize
+     */
+    public static <B extends BlockEntity & ReplicatedStateHolder> void syncFull(ServerPlayerEntity player, B blockEntity) {
+        if (!CHANNEL.canSendToPlayer(player)) return;
+
+        final var state = PacketByteBufs.create();
+        blockEntity.replicatedState().writeFull(state);
+
+        CHANNEL.serverHandle(player).send(new BlockEntityDelta(blockEntity.getPos(), state));
+    }
+
+    /**
+     * Sends the changed properties of the given entity to all
+     * players tracking it - including itself if it is a player
+     *
+     * @param entity The entity to synchronize
+     */
+    public static <E extends Entity & ReplicatedStateHolder> void sync(E entity) {
+        final var state = entity.replicatedState();
+        if (!state.isDirty()) return;
+
+        final var delta = PacketByteBufs.create();
+        state.writeDelta(delta);
+
+        final var receivers = receivers(PlayerLookup.tracking(entity));
+        if (entity instanceof ServerPlayerEntity player && CHANNEL.canSendToPlayer(player)) receivers.add(player);
+
+        CHANNEL.serverHandle(receivers).send(new EntityDelta(entity.getId(), delta));
+    }
+
+    /**
+     * Sends the changed properties of the given screen handler
+     * to the player which has it open
+     *
+     * @param player  The player viewing the screen handler
+     * @param handler The screen handler to synchronize
+     */
+    public static void sync(ServerPlayerEntity player, ScreenHandler handler) {
+        final var state = stateOf(handler);
+        if (state == null) throw new IllegalArgumentException("Screen handler '" + handler.getClass().getName() + "' has no replicated state");
+
+        // writing the delta clears the dirty properties, so
+        // nothing may be written for players which cannot receive it
+        if (!state.isDirty() || !CHANNEL.canSendToPlayer(player)) return;
+
+        final var delta = PacketByteBufs.create();
+        state.writeDelta(delta);
+
+        CHANNEL.serverHandle(player).send(new ScreenDelta(handler.syncId, delta));
+    }
+
+    /**
+     * Attaches the given state to the given screen handler, for screen
+     * handlers which do not implement {@link ReplicatedStateHolder} themselves.
+     * This must be done on both client and server
+     * <p>
+     * Attached states are synchronized automatically at the end
+     * of every server tick, for as long as the screen handler is open
+     *
+     * @param handler The screen handler to attach to
+     * @param state   The state to attach
+     */
+    public static void attach(ScreenHandler handler, ReplicatedState state) {
+        ATTACHED_SCREEN_STATES.put(handler, state);
+    }
+
+    @ApiStatus.Internal
+    public static void enable() {}
+
+    @ApiStatus.Internal
+    public static void onChunkSent(ServerPlayerEntity player, WorldChunk chunk) {
+        if (!CHANNEL.canSendToPlayer(player)) return;
+
+        BlockEntitySync.onChunkSent(player, chunk);
+
+        final var networkHandler = player.networkHandler;
+        for (var blockEntity : chunk.getBlockEntities().values()) {
+            if (!(blockEntity instanceof ReplicatedStateHolder holder)) continue;
+
+            // like for entities, the full state is sent at the end of the
+            // tick, after the block entity has been created on the client
+            PENDING_FULL_SYNCS.add(() -> {
+                final var receiver = networkHandler.player;
+                if (blockEntity.isRemoved() || receiver.isDisconnected() || receiver.world != blockEntity.getWorld()) return;
+
+                final var state = PacketByteBufs.create();
+                holder.replicatedState().writeFull(state);
+
+                CHANNEL.serverHandle(receiver).send(new BlockEntityDelta(blockEntity.getPos(), state));
+            });
+        }
+    }
+
+    static @Nullable ReplicatedState stateOf(ScreenHandler handler) {
+        if (handler instanceof ReplicatedStateHolder holder) return holder.replicatedState();
+        return ATTACHED_SCREEN_STATES.get(handler);
+    }
+
+    private static List<ServerPlayerEntity> receivers(Collection<ServerPlayerEntity> watchers) {
+        final var receivers = new ArrayList<ServerPlayerEntity>(watchers.size());
+        for (var player : watchers) {
+            if (CHANNEL.canSendToPlayer(player)) receivers.add(player);
+        }
+        return receivers;
+    }
+
+    private static void apply(@Nullable Object target, PacketByteBuf delta) {
+        if (!(target instanceof ReplicatedStateHolder holder)) return;
+        holder.replicatedState().readDelta(delta);
+    }
+
+    private static void applyToScreen(ClientAccess access, int syncId, PacketByteBuf delta) {
+        final var handler = access.player().currentScreenHandler;
+        if (handler.syncId != syncId) return;
+
+        final var state = stateOf(handler);
+        if (state != null) state.readDelta(delta);
+    }
+
+    static {
+        CHANNEL.registerClientbound(BlockEntityDelta.class, (message, access) -> apply(access.runtime().world.getBlockEntity(message.pos()), message.delta()));
+        CHANNEL.registerClientbound(EntityDelta.class, (message, access) -> apply(access.runtime().world.getEntityById(message.entityId()), message.delta()));
+        CHANNEL.registerClientbound(ScreenDelta.class, (message, access) -> applyToScreen(access, message.syncId(), message.delta()));
+        CHANNEL.registerClientbound(BlockEntitySync.ChunkDelta.class, BlockEntitySync::apply);
+
+        // the tracking event fires before the client knows about the
+        // entity, so the initial state is sent at the end of the tick
+        EntityTrackingEvents.START_TRACKING.register((trackedEntity, player) -> {
+            if (!(trackedEntity instanceof ReplicatedStateHolder holder) || !CHANNEL.canSendToPlayer(player)) return;
+
+            // the player may respawn before the end of the tick,
+            // so it is looked up again through the network handler
+            final var networkHandler = player.networkHandler;
+            PENDING_FULL_SYNCS.add(() -> {
+                final var receiver = networkHandler.player;
+                if (trackedEntity.isRemoved() || receiver.isDisconnected() || receiver.world != trackedEntity.world) return;
+
+                final var state = PacketByteBufs.create();
+                holder.replicatedState().writeFull(state);
+
+                CHANNEL.serverHandle(receiver).send(new EntityDelta(trackedEntity.getId(), state));
+            });
+        });
+
+        ServerTickEvents.END_SERVER_TICK.register(server -> {
+            if (!ATTACHED_SCREEN_STATES.isEmpty()) {
+                for (var player : server.getPlayerManager().getPlayerList()) {
+                    if (ATTACHED_SCREEN_STATES.containsKey(player.currentScreenHandler)) sync(player, player.currentScreenHandler);
+                }
+            }
+
+            if (PENDING_FULL_SYNCS.isEmpty()) return;
+
+            PENDING_FULL_SYNCS.forEach(Runnable::run);
+            PENDING_FULL_SYNCS.clear();
+        });
+    }
+
+    @ApiStatus.Internal
+    public record BlockEntityDelta(BlockPos pos, PacketByteBuf delta) {}
+
+    @ApiStatus.Internal
+    public record EntityDelta(int entityId, PacketByteBuf delta) {}
+
+    @ApiStatus.Internal
+    public record ScreenDelta(int syncId, PacketByteBuf delta) {}
+}
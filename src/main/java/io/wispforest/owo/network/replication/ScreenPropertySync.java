@@ -0,0 +1,74 @@
+package io.wispforest.owo.network.replication;
+
+import net.minecraft.screen.ScreenHandler;
+
+/**
+ * A replacement for vanilla's {@link net.minecraft.screen.PropertyDelegate}
+ * that supports full-width {@code int}, {@code long}, {@code float} and
+ * record properties. Changed properties are tracked as they are set and all
+ * changes of one tick are sent to the viewing player in a single packet
+ * <p>
+ * Create this in the constructor of your screen handler, on both client and
+ * server, and declare the properties in the same order on both sides:
+ *
+ * <pre>
+ * {@code
+ * this.properties = new ScreenPropertySync(this);
+ * this.progress = this.properties.intProperty(0);
+ * this.energy = this.properties.longProperty(0);
+ *
+ * ScreenUtils.generatePlayerSlots(8, 84, playerInventory, this::addSlot);
+ * }
+ * </pre>
+ *
+ * On the server, update the properties with {@link ReplicatedState.Property#set(Object)}
+ * whenever the underlying values change - synchronization then happens automatically
+ *
+ * @see io.wispforest.owo.client.screens.ScreenUtils
+ */
+public class ScreenPropertySync {
+
+    private final ReplicatedState state = new ReplicatedState();
+
+    public ScreenPropertySync(ScreenHandler handler) {
+        Replication.attach(handler, this.state);
+    }
+
+    public ReplicatedState.Property<Integer> intProperty(int initial) {
+        return this.state.property(Integer.class, initial);
+    }
+
+    public ReplicatedState.Property<Long> longProperty(long initial) {
+        return this.state.property(Long.class, initial);
+    }
+
+    public ReplicatedState.Property<Float> floatProperty(float initial) {
+        return this.state.property(Float.class, initial);
+    }
+
+    public <R extends Record> ReplicatedState.Property<R> recordProperty(Class<R> recordClass, R initial) {
+        return this.state.property(recordClass, initial);
+    }
+
+    /**
+     * Declares a property of any type supported
+     * by the {@link io.wispforest.owo.network.serialization.PacketBufSerializer} system
+     *
+     * @param clazz   The type of the property
+     * @param initial The initial value of the property
+     * @return The declared property
+     */
+    public <T> ReplicatedState.Property<T> property(Class<T> clazz, T initial) {
+        return this.state.property(clazz, initial);
+    }
+
+    /**
+     * Sets the code that is run on the client
+     * after changed properties have been received
+     *
+     * @param listener The code to run
+     */
+    public void onUpdate(Runnable listener) {
+        this.state.onUpdate(listener);
+    }
+}
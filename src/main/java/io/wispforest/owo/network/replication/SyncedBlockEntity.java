@@ -0,0 +1,36 @@
+package io.wispforest.owo.network.replication;
+
+/**
+ * A block entity whose client-visible state is described
+ * by a {@code record} and synchronized through {@link BlockEntitySync}
+ * instead of vanilla's NBT-based update packets
+ * <p>
+ * The record is serialized with the {@link io.wispforest.owo.network.serialization.RecordSerializer}
+ * system and may have at most 64 components
+ *
+ * @param <R> The type of record describing the synchronized state
+ */
+public interface SyncedBlockEntity<R extends Record> {
+
+    /**
+     * @return The class of the record describing the synchronized state
+     */
+    Class<R> syncStateClass();
+
+    /**
+     * Captures the current client-visible state of this block entity.
+     * <b>This is called on both sides</b> - on the client, it is used as the
+     * base that received changes are applied on top of
+     *
+     * @return A snapshot of the current state
+     */
+    R createSyncState();
+
+    /**
+     * Called on the client when a changed state has been received
+     *
+     * @param state The new state
+     */
+    void applySyncState(R state);
+
+}
@@ -0,0 +1,141 @@
+package io.wispforest.owo.network.serialization;
+
+import net.minecraft.item.ItemStack;
+import net.minecraft.network.PacketByteBuf;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * A table of values which have already been written to or read from
+ * the message currently being processed on this thread. While a table is
+ * open, serializers created via {@link #deduplicating(BiConsumer, Function, Function, UnaryOperator)}
+ * prefix every value with a varint - {@code 0} for a value that follows in full,
+ * or the 1-based index of an earlier equal value. {@code null} values are never
+ * deduplicated and take no index, they are left to the wrapped serializer
+ * <p>
+ * Tables are opened by {@link io.wispforest.owo.network.OwoNetChannel}
+ * around messages annotated with {@link io.wispforest.owo.network.annotations.Deduplicate}
+ */
+public final class DedupTable implements AutoCloseable {
+
+    private static final ThreadLocal<DedupTable> CURRENT = new ThreadLocal<>();
+
+    private final @Nullable DedupTable previous;
+    private final Map<Object, Integer> written = new HashMap<>();
+    private final List<Object> read = new ArrayList<>();
+
+    private DedupTable(@Nullable DedupTable previous) {
+        this.previous = previous;
+    }
+
+    /**
+     * Opens a new table for the current thread, which stays
+     * active until it is {@linkplain #close() closed}
+     *
+     * @return The opened table
+     */
+    @ApiStatus.Internal
+    public static DedupTable open() {
+        final var table = new DedupTable(CURRENT.get());
+        CURRENT.set(table);
+        return table;
+    }
+
+    @Override
+    public void close() {
+        if (this.previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(this.previous);
+        }
+    }
+
+    /**
+     * Wraps the given (de-)serialization functions so that they
+     * deduplicate values while a table is open on the current thread
+     *
+     * @param serializer   The function to write values in full with
+     * @param deserializer The function to read values in full with
+     * @param keyFunction  A function creating a key with cheap {@code hashCode}
+     *                     and {@code equals} implementations for a value
+     * @param copyFunction A function creating an independent copy of a value,
+     *                     applied to every back-reference that is read
+     * @return The deduplicating serializer
+     */
+    public static <T> PacketBufSerializer<T> deduplicating(BiConsumer<PacketByteBuf, T> serializer, Function<PacketByteBuf, T> deserializer,
+                                                         Function<T, Object> keyFunction, UnaryOperator<T> copyFunction) {
+        return new PacketBufSerializer<>((buf, value) -> {
+            final var table = CURRENT.get();
+            if (table == null) {
+                serializer.accept(buf, value);
+                return;
+            }
+
+            if (value == null) {
+                buf.writeVarInt(0);
+                serializer.accept(buf, null);
+                return;
+            }
+
+            final var key = keyFunction.apply(value);
+            final var index = table.written.get(key);
+            if (index != null) {
+                buf.writeVarInt(index + 1);
+                return;
+            }
+
+            table.written.put(key, table.written.size());
+            buf.writeVarInt(0);
+            serializer.accept(buf, value);
+        }, buf -> {
+            final var table = CURRENT.get();
+            if (table == null) return deserializer.apply(buf);
+
+            final int reference = buf.readVarInt();
+            if (reference == 0) {
+                final var value = deserializer.apply(buf);
+                if (value != null) table.read.add(value);
+                return value;
+            }
+
+            if (reference > table.read.size()) throw new IllegalStateException("Invalid dedup back-reference " + reference);
+
+            @SuppressWarnings("unchecked") final var original = (T) table.read.get(reference - 1);
+            return copyFunction.apply(original);
+        });
+    }
+
+    /**
+     * A key for {@link ItemStack}s, which do not implement {@code equals}
+     * and {@code hashCode} themselves
+     */
+    static final class StackKey {
+
+        private final ItemStack stack;
+        private final int hash;
+
+        StackKey(ItemStack stack) {
+            this.stack = stack;
+            this.hash = Objects.hash(stack.getItem(), stack.getCount(), stack.getNbt());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof StackKey other && this.hash == other.hash && ItemStack.areEqual(this.stack, other.stack);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package io.wispforest.owo.network.serialization;
+
+import net.minecraft.network.PacketByteBuf;
+
+import java.util.Arrays;
+
+/**
+ * A view of a serialized record which decodes each
+ * component only once it is first accessed. Obtained from
+ * {@link RecordSerializer#readLazy(PacketByteBuf)}
+ * <p>
+ * This view holds on to a retained slice of the buffer it was
+ * read from - once it is {@linkplain #release() released}, components
+ * which have not been decoded yet can no longer be accessed
+ *
+ * @param <R> The type of record this is a view of
+ */
+public final class LazyRecord<R extends Record> {
+
+    private static final Object UNDECODED = new Object();
+
+    private final RecordSerializer<R> serializer;
+    private final int[] offsets;
+    private final int[] lengths;
+    private final Object[] components;
+
+    private PacketByteBuf payload;
+
+    LazyRecord(RecordSerializer<R> serializer, PacketByteBuf payload, int[] offsets, int[] lengths) {
+        this.serializer = serializer;
+        this.payload = payload;
+        this.offsets = offsets;
+        this.lengths = lengths;
+
+        this.components = new Object[serializer.componentCount()];
+        Arrays.fill(this.components, UNDECODED);
+    }
+
+    /**
+     * Gets the component at the given index,
+     * decoding it if necessary
+     *
+     * @param index The index of the component in the record header
+     * @param <T>   The type of the component
+     * @return The decoded component
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(int index) {
+        var component = this.components[index];
+        if (component != UNDECODED) return (T) component;
+
+        if (this.payload == null) {
+            throw new IllegalStateException("Component " + index + " of lazy '" + serializer.getRecordClass().getName() + "' accessed after release");
+        }
+
+        component = this.serializer.readComponent(index, new PacketByteBuf(this.payload.slice(this.offsets[index], this.lengths[index])));
+        this.components[index] = component;
+
+        return (T) component;
+    }
+
+    /**
+     * Gets the component with the given name,
+     * decoding it if necessary
+     *
+     * @param name The name of the component
+     * @param <T>  The type of the component
+     * @return The decoded component
+     */
+    public <T> T get(String name) {
+        return get(this.serializer.componentIndex(name));
+    }
+
+    /**
+     * @return The encoded size of the component at the given index, in bytes
+     */
+    public int encodedSize(int index) {
+        return this.lengths[index];
+    }
+
+    /**
+     * Decodes all remaining components and
+     * creates the actual record instance
+     *
+     * @return The fully decoded record
+     */
+    public R materialize() {
+        final var contents = new Object[this.components.length];
+        for (int i = 0; i < contents.length; i++) {
+            contents[i] = get(i);
+        }
+
+        return this.serializer.instantiate(contents);
+    }
+
+    public Class<R> recordClass() {
+        return this.serializer.getRecordClass();
+    }
+
+    /**
+     * Releases the underlying buffer slice. Components which
+     * have already been decoded stay accessible
+     *
+     * @return {@code true} if this call released the buffer
+     */
+    public boolean release() {
+        if (this.payload == null) return false;
+
+        this.payload.release();
+        this.payload = null;
+        return true;
+    }
+}
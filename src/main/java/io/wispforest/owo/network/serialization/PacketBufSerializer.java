@@ -2,10 +2,6 @@ package io.wispforest.owo.network.serialization;
 
 import io.wispforest.owo.network.annotations.SealedPolymorphic;
 import io.wispforest.owo.util.VectorSerializer;
-import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
-import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
-import it.unimi.dsi.fastutil.objects.Reference2IntMap;
-import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.network.PacketByteBuf;
@@ -26,9 +22,11 @@ import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
 
 /**
@@ -43,6 +41,9 @@ public record PacketBufSerializer<T>(BiConsumer<PacketByteBuf, T> serializer, Fu
 
     private static final Map<Class<?>, Supplier<?>> COLLECTION_PROVIDERS = new HashMap<>();
     private static final Map<Class<?>, PacketBufSerializer<?>> SERIALIZERS = new HashMap<>();
+    private static final Set<Class<?>> EXPLICIT_SERIALIZERS = new HashSet<>();
+
+    private static final int LINEAR_DISPATCH_THRESHOLD = 4;
 
     /**
      * Enables (de-)serialization for the given class
@@ -54,6 +55,7 @@ public record PacketBufSerializer<T>(BiConsumer<PacketByteBuf, T> serializer, Fu
     public static <T> void register(Class<T> clazz, PacketBufSerializer<T> serializer) {
         if (SERIALIZERS.containsKey(clazz)) throw new IllegalStateException("Class '" + clazz.getName() + "' already has a serializer");
         SERIALIZERS.put(clazz, serializer);
+        EXPLICIT_SERIALIZERS.add(clazz);
     }
 
     /**
@@ -156,6 +158,10 @@ public record PacketBufSerializer<T>(BiConsumer<PacketByteBuf, T> serializer, Fu
         return serializer;
     }
 
+    static boolean isExplicitlyRegistered(Class<?> clazz) {
+        return EXPLICIT_SERIALIZERS.contains(clazz);
+    }
+
     /**
      * Registers a supplier that creates empty collections for the
      * map and collection serializers to use
@@ -281,20 +287,40 @@ public record PacketBufSerializer<T>(BiConsumer<PacketByteBuf, T> serializer, Fu
         return new PacketBufSerializer<>(PacketByteBuf::writeEnumConstant, buf -> buf.readEnumConstant(enumClass));
     }
 
+    /**
+     * Creates a serializer which writes a key for every value and
+     * then delegates to the serializer associated with that key.
+     * The serializers returned by {@code keyToSerializer} are cached
+     * per key, so it must always return the same serializer for a given key
+     *
+     * @param keyToSerializer A function providing the serializer for a given key
+     * @param keyGetter       A function extracting the key of a value
+     * @param keySerializer   The serializer to use for keys
+     * @return The created serializer
+     */
     @SuppressWarnings("unchecked")
     public static <T, K> PacketBufSerializer<T> createDispatchedSerializer(Function<K, PacketBufSerializer<? extends T>> keyToSerializer, Function<T, K> keyGetter, PacketBufSerializer<K> keySerializer) {
+        final var serializerCache = new ConcurrentHashMap<K, PacketBufSerializer<Object>>();
+        final Function<K, PacketBufSerializer<Object>> lookup = key -> {
+            // the cache does not permit null keys,
+            // so those always go to the key function
+            if (key == null) return (PacketBufSerializer<Object>) keyToSerializer.apply(null);
+
+            var serializer = serializerCache.get(key);
+            if (serializer != null) return serializer;
+
+            serializer = (PacketBufSerializer<Object>) keyToSerializer.apply(key);
+            if (serializer != null) serializerCache.put(key, serializer);
+
+            return serializer;
+        };
+
         return new PacketBufSerializer<>((buf, value) -> {
             var key = keyGetter.apply(value);
-            var serializer = (PacketBufSerializer<Object>) keyToSerializer.apply(key);
 
             keySerializer.serializer.accept(buf, key);
-            serializer.serializer.accept(buf, value);
-        }, buf -> {
-            var key = keySerializer.deserializer.apply(buf);
-            var serializer = keyToSerializer.apply(key);
-
-            return serializer.deserializer.apply(buf);
-        });
+            lookup.apply(key).serializer.accept(buf, value);
+        }, buf -> (T) lookup.apply(keySerializer.deserializer.apply(buf)).deserializer.apply(buf));
     }
 
     @SuppressWarnings("unchecked")
@@ -322,32 +348,53 @@ public record PacketBufSerializer<T>(BiConsumer<PacketByteBuf, T> serializer, Fu
 
         sortedPermittedSubclasses.sort(Comparator.comparing(Class::getName));
 
-        Int2ObjectMap<PacketBufSerializer<?>> serializerMap = new Int2ObjectOpenHashMap<>();
-        Reference2IntMap<Class<?>> classesMap = new Reference2IntOpenHashMap<>();
+        final int subclassCount = sortedPermittedSubclasses.size();
+        final Class<?>[] classes = sortedPermittedSubclasses.toArray(Class<?>[]::new);
+        final BiConsumer<PacketByteBuf, Object>[] writers = new BiConsumer[subclassCount];
+        final Function<PacketByteBuf, Object>[] readers = new Function[subclassCount];
 
-        classesMap.defaultReturnValue(-1);
+        for (int i = 0; i < subclassCount; i++) {
+            var serializer = (PacketBufSerializer<Object>) PacketBufSerializer.get(classes[i]);
 
-        for (int i = 0; i < sortedPermittedSubclasses.size(); i++) {
-            Class<?> klass = sortedPermittedSubclasses.get(i);
+            writers[i] = serializer.serializer;
+            readers[i] = serializer.deserializer;
+        }
 
-            serializerMap.put(i, PacketBufSerializer.get(klass));
-            classesMap.put(klass, i);
+        // small hierarchies are cheaper to scan than to look up
+        final ToIntFunction<Class<?>> indexLookup;
+        if (subclassCount <= LINEAR_DISPATCH_THRESHOLD) {
+            indexLookup = klass -> {
+                for (int i = 0; i < subclassCount; i++) {
+                    if (classes[i] == klass) return i;
+                }
+                return -1;
+            };
+        } else {
+            final var indices = new ClassValue<Integer>() {
+                @Override
+                protected Integer computeValue(Class<?> type) {
+                    for (int i = 0; i < subclassCount; i++) {
+                        if (classes[i] == type) return i;
+                    }
+                    return -1;
+                }
+            };
+            indexLookup = indices::get;
         }
 
         return new PacketBufSerializer<>((buf, value) -> {
-            int idx = classesMap.getInt(value.getClass());
+            int idx = indexLookup.applyAsInt(value.getClass());
 
             if (idx == -1) throw new IllegalStateException("Tried to serialize instance of " + value.getClass() + " as a " + commonClass);
 
             buf.writeVarInt(idx);
-            ((BiConsumer<PacketByteBuf, Object>) serializerMap.get(idx).serializer).accept(buf, value);
+            writers[idx].accept(buf, value);
         }, buf -> {
             int idx = buf.readVarInt();
-            PacketBufSerializer<Object> serializer = (PacketBufSerializer<Object>) serializerMap.get(idx);
 
-            if (serializer == null) throw new IllegalStateException("Unknown index " + idx);
+            if (idx < 0 || idx >= subclassCount) throw new IllegalStateException("Unknown index " + idx);
 
-            return serializer.deserializer.apply(buf);
+            return readers[idx].apply(buf);
         });
     }
 
@@ -392,9 +439,9 @@ public record PacketBufSerializer<T>(BiConsumer<PacketByteBuf, T> serializer, Fu
 
         register(BlockPos.class, PacketByteBuf::writeBlockPos, PacketByteBuf::readBlockPos);
         register(ChunkPos.class, PacketByteBuf::writeChunkPos, PacketByteBuf::readChunkPos);
-        register(ItemStack.class, PacketByteBuf::writeItemStack, PacketByteBuf::readItemStack);
+        register(ItemStack.class, DedupTable.deduplicating(PacketByteBuf::writeItemStack, PacketByteBuf::readItemStack, DedupTable.StackKey::new, ItemStack::copy));
         register(Identifier.class, PacketByteBuf::writeIdentifier, PacketByteBuf::readIdentifier);
-        register(NbtCompound.class, PacketByteBuf::writeNbt, PacketByteBuf::readNbt);
+        register(NbtCompound.class, DedupTable.deduplicating(PacketByteBuf::writeNbt, PacketByteBuf::readNbt, nbt -> nbt, NbtCompound::copy));
         register(BlockHitResult.class, PacketByteBuf::writeBlockHitResult, PacketByteBuf::readBlockHitResult);
         register(BitSet.class, PacketByteBuf::writeBitSet, PacketByteBuf::readBitSet);
         register(Text.class, PacketByteBuf::writeText, PacketByteBuf::readText);
@@ -0,0 +1,224 @@
+package io.wispforest.owo.network.serialization;
+
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.math.Vec3d;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * Compact serializers for collections of positions. Each entry is written
+ * as the zigzag-varint encoded difference to the previous one, so
+ * collections of nearby positions - like the members of a multiblock -
+ * take one or two bytes per coordinate instead of the full width
+ * <p>
+ * Usually applied to record components via
+ * {@link io.wispforest.owo.network.annotations.PackedPositions}
+ */
+public final class PositionCollectionSerializer {
+
+    private static final byte MODE_DELTA = 0;
+    private static final byte MODE_SECTION = 1;
+
+    private static final double VEC_SCALE = 4096d;
+
+    private PositionCollectionSerializer() {}
+
+    /**
+     * Creates a packed serializer for the given collection type
+     *
+     * @param collectionClass The type of collection to create, a collection
+     *                        provider must be registered for it
+     * @param elementClass    The position type, one of {@link BlockPos},
+     *                        {@link ChunkPos} or {@link Vec3d}
+     * @param sort            Whether to sort the positions before encoding
+     * @param sectionRelative Whether to use section-relative packing when possible,
+     *                        only applies to {@link BlockPos}
+     * @return The created serializer
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Collection<?>> PacketBufSerializer<T> create(Class<T> collectionClass, Class<?> elementClass, boolean sort, boolean sectionRelative) {
+        PacketBufSerializer.createCollection(collectionClass);
+
+        if (elementClass == BlockPos.class) {
+            return (PacketBufSerializer<T>) new PacketBufSerializer<Collection<BlockPos>>(
+                    (buf, positions) -> writeBlockPositions(buf, positions, sort, sectionRelative),
+                    buf -> readBlockPositions(buf, PacketBufSerializer.createCollection(collectionClass)));
+        } else if (elementClass == ChunkPos.class) {
+            return (PacketBufSerializer<T>) new PacketBufSerializer<Collection<ChunkPos>>(
+                    (buf, positions) -> writeChunkPositions(buf, positions, sort),
+                    buf -> readChunkPositions(buf, PacketBufSerializer.createCollection(collectionClass)));
+        } else if (elementClass == Vec3d.class) {
+            return (PacketBufSerializer<T>) new PacketBufSerializer<Collection<Vec3d>>(
+                    (buf, positions) -> writeVectors(buf, positions, sort),
+                    buf -> readVectors(buf, PacketBufSerializer.createCollection(collectionClass)));
+        }
+
+        throw new IllegalStateException("Cannot pack collections of '" + elementClass.getName() + "', only BlockPos, ChunkPos and Vec3d are supported");
+    }
+
+    // ---------------
+    // Block positions
+    // ---------------
+
+    public static void writeBlockPositions(PacketByteBuf buf, Collection<BlockPos> positions, boolean sort, boolean sectionRelative) {
+        buf.writeVarInt(positions.size());
+        if (positions.isEmpty()) return;
+
+        final var entries = positions.toArray(BlockPos[]::new);
+        if (sort) Arrays.sort(entries, Comparator.comparingLong(BlockPos::asLong));
+
+        if (sectionRelative) {
+            final long section = ChunkSectionPos.from(entries[0]).asLong();
+
+            boolean sameSection = true;
+            for (var pos : entries) {
+                if (ChunkSectionPos.from(pos).asLong() != section) {
+                    sameSection = false;
+                    break;
+                }
+            }
+
+            if (sameSection) {
+                buf.writeByte(MODE_SECTION);
+                buf.writeLong(section);
+                for (var pos : entries) buf.writeShort(ChunkSectionPos.packLocal(pos));
+                return;
+            }
+        }
+
+        buf.writeByte(MODE_DELTA);
+
+        int prevX = 0, prevY = 0, prevZ = 0;
+        for (var pos : entries) {
+            writeZigZag(buf, pos.getX() - prevX);
+            writeZigZag(buf, pos.getY() - prevY);
+            writeZigZag(buf, pos.getZ() - prevZ);
+
+            prevX = pos.getX();
+            prevY = pos.getY();
+            prevZ = pos.getZ();
+        }
+    }
+
+    public static <C extends Collection<BlockPos>> C readBlockPositions(PacketByteBuf buf, C into) {
+        final int count = buf.readVarInt();
+        if (count == 0) return into;
+
+        if (buf.readByte() == MODE_SECTION) {
+            final var section = ChunkSectionPos.from(buf.readLong());
+            for (int i = 0; i < count; i++) {
+                final short local = buf.readShort();
+                into.add(new BlockPos(section.unpackBlockX(local), section.unpackBlockY(local), section.unpackBlockZ(local)));
+            }
+            return into;
+        }
+
+        int x = 0, y = 0, z = 0;
+        for (int i = 0; i < count; i++) {
+            x += readZigZag(buf);
+            y += readZigZag(buf);
+            z += readZigZag(buf);
+            into.add(new BlockPos(x, y, z));
+        }
+
+        return into;
+    }
+
+    // ---------------
+    // Chunk positions
+    // ---------------
+
+    public static void writeChunkPositions(PacketByteBuf buf, Collection<ChunkPos> positions, boolean sort) {
+        buf.writeVarInt(positions.size());
+
+        final var entries = positions.toArray(ChunkPos[]::new);
+        if (sort) Arrays.sort(entries, Comparator.comparingInt((ChunkPos pos) -> pos.x).thenComparingInt(pos -> pos.z));
+
+        int prevX = 0, prevZ = 0;
+        for (var pos : entries) {
+            writeZigZag(buf, pos.x - prevX);
+            writeZigZag(buf, pos.z - prevZ);
+
+            prevX = pos.x;
+            prevZ = pos.z;
+        }
+    }
+
+    public static <C extends Collection<ChunkPos>> C readChunkPositions(PacketByteBuf buf, C into) {
+        final int count = buf.readVarInt();
+
+        int x = 0, z = 0;
+        for (int i = 0; i < count; i++) {
+            x += readZigZag(buf);
+            z += readZigZag(buf);
+            into.add(new ChunkPos(x, z));
+        }
+
+        return into;
+    }
+
+    // -------
+    // Vectors
+    // -------
+
+    public static void writeVectors(PacketByteBuf buf, Collection<Vec3d> vectors, boolean sort) {
+        buf.writeVarInt(vectors.size());
+
+        final var entries = vectors.toArray(Vec3d[]::new);
+        if (sort) Arrays.sort(entries, Comparator.comparingDouble((Vec3d vec) -> vec.x).thenComparingDouble(vec -> vec.y).thenComparingDouble(vec -> vec.z));
+
+        long prevX = 0, prevY = 0, prevZ = 0;
+        for (var vec : entries) {
+            final long x = Math.round(vec.x * VEC_SCALE), y = Math.round(vec.y * VEC_SCALE), z = Math.round(vec.z * VEC_SCALE);
+
+            writeZigZag(buf, x - prevX);
+            writeZigZag(buf, y - prevY);
+            writeZigZag(buf, z - prevZ);
+
+            prevX = x;
+            prevY = y;
+            prevZ = z;
+        }
+    }
+
+    public static <C extends Collection<Vec3d>> C readVectors(PacketByteBuf buf, C into) {
+        final int count = buf.readVarInt();
+
+        long x = 0, y = 0, z = 0;
+        for (int i = 0; i < count; i++) {
+            x += readZigZagLong(buf);
+            y += readZigZagLong(buf);
+            z += readZigZagLong(buf);
+            into.add(new Vec3d(x / VEC_SCALE, y / VEC_SCALE, z / VEC_SCALE));
+        }
+
+        return into;
+    }
+
+    // -------
+    // Zigzag
+    // -------
+
+    public static void writeZigZag(PacketByteBuf buf, int value) {
+        buf.writeVarInt((value << 1) ^ (value >> 31));
+    }
+
+    public static int readZigZag(PacketByteBuf buf) {
+        final int encoded = buf.readVarInt();
+        return (encoded >>> 1) ^ -(encoded & 1);
+    }
+
+    public static void writeZigZag(PacketByteBuf buf, long value) {
+        buf.writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    public static long readZigZagLong(PacketByteBuf buf) {
+        final long encoded = buf.readVarLong();
+        return (encoded >>> 1) ^ -(encoded & 1);
+    }
+}
@@ -2,13 +2,25 @@ package io.wispforest.owo.network.serialization;
 
 import com.google.common.collect.ImmutableMap;
 import io.wispforest.owo.Owo;
+import io.wispforest.owo.network.annotations.PackedPositions;
 import net.minecraft.network.PacketByteBuf;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.util.math.Vec3f;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
@@ -23,6 +35,10 @@ import java.util.function.Function;
  * <p> To serialize an instance use {@link #write(PacketByteBuf, Record)},
  * to read it back again use {@link #read(PacketByteBuf)}
  *
+ * <p> Alternatively, {@link #writeLazy(PacketByteBuf, Record)} writes a length-prefixed
+ * layout which {@link #readLazy(PacketByteBuf)} turns into a {@link LazyRecord} that
+ * only decodes components once they are accessed
+ *
  * @param <R> The type of record this serializer can handle
  */
 @SuppressWarnings({"unchecked", "rawtypes"})
@@ -31,15 +47,25 @@ public class RecordSerializer<R extends Record> {
     private static final Map<Class<?>, RecordSerializer<?>> SERIALIZERS = new HashMap<>();
 
     private final Map<Function<R, ?>, PacketBufSerializer> adapters;
+    private final Function<R, ?>[] componentAccessors;
+    private final PacketBufSerializer[] componentAdapters;
+    private final String[] componentNames;
+
     private final Class<R> recordClass;
     private final Constructor<R> instanceCreator;
     private final int fieldCount;
+    private final int fixedSize;
 
-    private RecordSerializer(Class<R> recordClass, Constructor<R> instanceCreator, ImmutableMap<Function<R, ?>, PacketBufSerializer> adapters) {
+    private RecordSerializer(Class<R> recordClass, Constructor<R> instanceCreator, ImmutableMap<Function<R, ?>, PacketBufSerializer> adapters, int fixedSize) {
         this.recordClass = recordClass;
         this.instanceCreator = instanceCreator;
         this.adapters = adapters;
         this.fieldCount = recordClass.getRecordComponents().length;
+        this.fixedSize = fixedSize;
+
+        this.componentAccessors = adapters.keySet().toArray(Function[]::new);
+        this.componentAdapters = adapters.values().toArray(PacketBufSerializer[]::new);
+        this.componentNames = Arrays.stream(recordClass.getRecordComponents()).map(RecordComponent::getName).toArray(String[]::new);
     }
 
     /**
@@ -55,16 +81,20 @@ public class RecordSerializer<R extends Record> {
 
         final ImmutableMap.Builder<Function<R, ?>, PacketBufSerializer> adapters = new ImmutableMap.Builder<>();
         final Class<?>[] canonicalConstructorArgs = new Class<?>[recordClass.getRecordComponents().length];
+        int fixedSize = 0;
 
         for (int i = 0; i < recordClass.getRecordComponents().length; i++) {
             var component = recordClass.getRecordComponents()[i];
 
-            adapters.put(r -> getRecordEntry(r, component.getAccessor()), PacketBufSerializer.getGeneric(component.getGenericType()));
+            adapters.put(r -> getRecordEntry(r, component.getAccessor()), adapterFor(component));
             canonicalConstructorArgs[i] = component.getType();
+
+            int componentSize = component.getGenericType() instanceof Class<?> ? fixedSizeOf(component.getType()) : -1;
+            fixedSize = fixedSize == -1 || componentSize == -1 ? -1 : fixedSize + componentSize;
         }
 
         try {
-            final var serializer = new RecordSerializer<>(recordClass, recordClass.getConstructor(canonicalConstructorArgs), adapters.build());
+            final var serializer = new RecordSerializer<>(recordClass, recordClass.getConstructor(canonicalConstructorArgs), adapters.build(), fixedSize);
             SERIALIZERS.put(recordClass, serializer);
             return serializer;
         } catch (NoSuchMethodException e) {
@@ -72,6 +102,19 @@ public class RecordSerializer<R extends Record> {
         }
     }
 
+    private static PacketBufSerializer<?> adapterFor(RecordComponent component) {
+        final var packed = component.getAnnotation(PackedPositions.class);
+        if (packed == null) return PacketBufSerializer.getGeneric(component.getGenericType());
+
+        if (!(component.getGenericType() instanceof ParameterizedType type)
+                || !Collection.class.isAssignableFrom(component.getType())
+                || !(type.getActualTypeArguments()[0] instanceof Class<?> elementClass)) {
+            throw new IllegalStateException("@PackedPositions component '" + component.getName() + "' must be a collection of positions");
+        }
+
+        return PositionCollectionSerializer.create((Class<? extends Collection<?>>) component.getType(), elementClass, packed.sort(), packed.sectionRelative());
+    }
+
     /**
      * Attempts to read a record of this serializer's
      * type from the given buffer
@@ -85,13 +128,7 @@ public class RecordSerializer<R extends Record> {
         AtomicInteger index = new AtomicInteger();
         adapters.forEach((rFunction, typeAdapter) -> messageContents[index.getAndIncrement()] = typeAdapter.deserializer().apply(buffer));
 
-        try {
-            return instanceCreator.newInstance(messageContents);
-        } catch (InvocationTargetException | InstantiationException | IllegalAccessException e) {
-            Owo.LOGGER.error("Error while deserializing record", e);
-        }
-
-        return null;
+        return instantiate(messageContents);
     }
 
     /**
@@ -106,10 +143,182 @@ public class RecordSerializer<R extends Record> {
         return this;
     }
 
+    /**
+     * Writes the given record instance to the given buffer, prefixing
+     * each component with its encoded length so that it can be
+     * read back using {@link #readLazy(PacketByteBuf)}
+     *
+     * @param buffer   The buffer to write to
+     * @param instance The record instance to serialize
+     */
+    public RecordSerializer<R> writeLazy(PacketByteBuf buffer, R instance) {
+        for (int i = 0; i < fieldCount; i++) {
+            int lengthIndex = buffer.writerIndex();
+            buffer.writeInt(0);
+
+            this.componentAdapters[i].serializer().accept(buffer, this.componentAccessors[i].apply(instance));
+            buffer.setInt(lengthIndex, buffer.writerIndex() - lengthIndex - 4);
+        }
+        return this;
+    }
+
+    /**
+     * Reads a record written by {@link #writeLazy(PacketByteBuf, Record)} from
+     * the given buffer. This only scans the component lengths, actual
+     * decoding is deferred until the respective component is accessed
+     * <p>
+     * The returned view holds a retained slice of {@code buffer} and
+     * must be {@linkplain LazyRecord#release() released} after use
+     *
+     * @param buffer The buffer to read from
+     * @return A lazy view of the record
+     */
+    public LazyRecord<R> readLazy(PacketByteBuf buffer) {
+        final int start = buffer.readerIndex();
+
+        final int[] offsets = new int[fieldCount];
+        final int[] lengths = new int[fieldCount];
+
+        for (int i = 0; i < fieldCount; i++) {
+            lengths[i] = buffer.readInt();
+            offsets[i] = buffer.readerIndex() - start;
+            buffer.skipBytes(lengths[i]);
+        }
+
+        return new LazyRecord<>(this, new PacketByteBuf(buffer.retainedSlice(start, buffer.readerIndex() - start)), offsets, lengths);
+    }
+
+    /**
+     * Computes which components differ between the two given instances
+     *
+     * @param previous The previous state
+     * @param current  The current state
+     * @return A bitmask with one bit set for every component which differs
+     * @see #writeDelta(PacketByteBuf, Record, long)
+     */
+    public long diff(R previous, R current) {
+        checkDeltaCapable();
+
+        long mask = 0;
+        for (int i = 0; i < fieldCount; i++) {
+            if (!Objects.deepEquals(this.componentAccessors[i].apply(previous), this.componentAccessors[i].apply(current))) {
+                mask |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Writes the given component mask, followed by the
+     * components of {@code instance} which are set in it
+     *
+     * @param buffer   The buffer to write to
+     * @param instance The record instance to take components from
+     * @param mask     The components to write, usually obtained from {@link #diff(Record, Record)}
+     */
+    public RecordSerializer<R> writeDelta(PacketByteBuf buffer, R instance, long mask) {
+        checkDeltaCapable();
+
+        buffer.writeVarLong(mask);
+        while (mask != 0) {
+            int index = Long.numberOfTrailingZeros(mask);
+            mask &= mask - 1;
+
+            this.componentAdapters[index].serializer().accept(buffer, this.componentAccessors[index].apply(instance));
+        }
+        return this;
+    }
+
+    /**
+     * Reads a delta written by {@link #writeDelta(PacketByteBuf, Record, long)}
+     * and applies it on top of the given base instance
+     *
+     * @param buffer The buffer to read from
+     * @param base   The instance to take unchanged components from
+     * @return A new instance with the changed components replaced
+     */
+    public R readDelta(PacketByteBuf buffer, R base) {
+        checkDeltaCapable();
+
+        final var contents = new Object[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            contents[i] = this.componentAccessors[i].apply(base);
+        }
+
+        long mask = buffer.readVarLong();
+        while (mask != 0) {
+            int index = Long.numberOfTrailingZeros(mask);
+            mask &= mask - 1;
+
+            contents[index] = this.componentAdapters[index].deserializer().apply(buffer);
+        }
+
+        return instantiate(contents);
+    }
+
+    private void checkDeltaCapable() {
+        if (fieldCount > Long.SIZE) throw new IllegalStateException("Delta encoding only supports records with at most " + Long.SIZE + " components");
+    }
+
+    Object readComponent(int index, PacketByteBuf componentBuffer) {
+        return this.componentAdapters[index].deserializer().apply(componentBuffer);
+    }
+
+    R instantiate(Object[] components) {
+        try {
+            return instanceCreator.newInstance(components);
+        } catch (InvocationTargetException | InstantiationException | IllegalAccessException e) {
+            Owo.LOGGER.error("Error while deserializing record", e);
+        }
+
+        return null;
+    }
+
+    int componentIndex(String name) {
+        for (int i = 0; i < componentNames.length; i++) {
+            if (componentNames[i].equals(name)) return i;
+        }
+
+        throw new IllegalArgumentException("Record class '" + recordClass.getName() + "' has no component named '" + name + "'");
+    }
+
+    /**
+     * @return The number of components of this serializer's record type
+     */
+    public int componentCount() {
+        return fieldCount;
+    }
+
     public Class<R> getRecordClass() {
         return recordClass;
     }
 
+    /**
+     * @return The exact amount of bytes every instance of this serializer's
+     * record type encodes to, or {@code -1} if that size depends on the instance
+     */
+    public int fixedSize() {
+        return fixedSize;
+    }
+
+    private static int fixedSizeOf(Class<?> type) {
+        if (type == boolean.class || type == Boolean.class || type == byte.class || type == Byte.class) return 1;
+        if (type == short.class || type == Short.class || type == char.class || type == Character.class) return 2;
+        if (type == float.class || type == Float.class) return 4;
+        if (type == double.class || type == Double.class || type == Date.class) return 8;
+        if (type == BlockPos.class || type == ChunkPos.class) return 8;
+        if (type == Vec3f.class) return 12;
+        if (type == UUID.class) return 16;
+        if (type == Vec3d.class) return 24;
+        if (type == Void.class) return 0;
+
+        if (Record.class.isAssignableFrom(type) && !PacketBufSerializer.isExplicitlyRegistered(type)) {
+            return create((Class<? extends Record>) type).fixedSize();
+        }
+
+        return -1;
+    }
+
     private static <R extends Record> Object getRecordEntry(R instance, Method accessor) {
         try {
             return accessor.invoke(instance);
@@ -25,6 +25,8 @@ public class ClientParticles {
     private static boolean randomizeVelocity = false;
     private static double randomVelocityScalar = 0;
 
+    private static ParticlePriority priority = ParticlePriority.NORMAL;
+
     /**
      * Marks the values set by {@link ClientParticles#setParticleCount(int)} and {@link ClientParticles#setVelocity(Vec3d)} to be persistent
      */
@@ -66,6 +68,17 @@ public class ClientParticles {
         randomVelocityScalar = scalar;
     }
 
+    /**
+     * The priority with which particles are requested from the {@link ParticleBudget},
+     * particles which exceed the budget of the current frame are dropped
+     * <br><b>
+     * Volatile unless {@link ClientParticles#persist()} is called before the next operation
+     * </b>
+     */
+    public static void setPriority(ParticlePriority priority) {
+        ClientParticles.priority = priority;
+    }
+
     /**
      * Forces a reset of velocity and particleCount
      */
@@ -81,6 +94,7 @@ public class ClientParticles {
         velocity = new Vec3d(0, 0, 0);
 
         randomizeVelocity = false;
+        priority = ParticlePriority.NORMAL;
     }
 
     private static void addParticle(ParticleEffect particle, World world, Vec3d location) {
@@ -100,7 +114,8 @@ public class ClientParticles {
     public static void spawnCenteredOnBlock(ParticleEffect particle, World world, BlockPos pos, double deviation) {
         Vec3d location;
 
-        for (int i = 0; i < particleCount; i++) {
+        final int count = request(pos.getX() + .5, pos.getY() + .5, pos.getZ() + .5, deviation / 2);
+        for (int i = 0; i < count; i++) {
             location = VectorRandomUtils.getRandomCenteredOnBlock(world, pos, deviation);
             addParticle(particle, world, location);
         }
@@ -118,7 +133,8 @@ public class ClientParticles {
     public static void spawnWithinBlock(ParticleEffect particle, World world, BlockPos pos) {
         Vec3d location;
 
-        for (int i = 0; i < particleCount; i++) {
+        final int count = request(pos.getX() + .5, pos.getY() + .5, pos.getZ() + .5, .5);
+        for (int i = 0; i < count; i++) {
             location = VectorRandomUtils.getRandomWithinBlock(world, pos);
             addParticle(particle, world, location);
         }
@@ -139,7 +155,8 @@ public class ClientParticles {
         Vec3d location;
         offset = offset.add(Vec3d.of(pos));
 
-        for (int i = 0; i < particleCount; i++) {
+        final int count = request(offset.x, offset.y, offset.z, deviation / 2);
+        for (int i = 0; i < count; i++) {
             location = VectorRandomUtils.getRandomOffset(world, offset, deviation);
 
             addParticle(particle, world, location);
@@ -159,7 +176,8 @@ public class ClientParticles {
     public static void spawn(ParticleEffect particle, World world, Vec3d pos, double deviation) {
         Vec3d location;
 
-        for (int i = 0; i < particleCount; i++) {
+        final int count = request(pos.x, pos.y, pos.z, deviation / 2);
+        for (int i = 0; i < count; i++) {
             location = VectorRandomUtils.getRandomOffset(world, pos, deviation);
             addParticle(particle, world, location);
         }
@@ -180,7 +198,9 @@ public class ClientParticles {
     public static void spawnPrecise(ParticleEffect particle, World world, Vec3d pos, double deviationX, double deviationY, double deviationZ) {
         Vec3d location;
 
-        for (int i = 0; i < particleCount; i++) {
+        final int count = request(pos.x - deviationX / 2, pos.y - deviationY / 2, pos.z - deviationZ / 2,
+                pos.x + deviationX / 2, pos.y + deviationY / 2, pos.z + deviationZ / 2);
+        for (int i = 0; i < count; i++) {
             location = VectorRandomUtils.getRandomOffsetSpecific(world, pos, deviationX, deviationY, deviationZ);
             addParticle(particle, world, location);
         }
@@ -201,7 +221,10 @@ public class ClientParticles {
         Vec3d location;
         Vec3d particleVector = origin.subtract(destination);
 
-        for (int i = 0; i < particleCount; i++) {
+        // enchant particles travel from around the origin to the destination
+        final int count = request(Math.min(origin.x, destination.x) - deviation / 2, Math.min(origin.y, destination.y) - deviation / 2, Math.min(origin.z, destination.z) - deviation / 2,
+                Math.max(origin.x, destination.x) + deviation / 2, Math.max(origin.y, destination.y) + deviation / 2, Math.max(origin.z, destination.z) + deviation / 2);
+        for (int i = 0; i < count; i++) {
             location = VectorRandomUtils.getRandomOffset(world, particleVector, deviation);
             world.addParticle(ParticleTypes.ENCHANT, destination.x, destination.y, destination.z, location.x, location.y, location.z);
         }
@@ -218,6 +241,11 @@ public class ClientParticles {
      */
     @SuppressWarnings("ConstantConditions")
     public static <T extends ParticleEffect> void spawnWithMaxAge(T particleType, Vec3d pos, int maxAge) {
+        if (!ParticleCulling.isVisible(pos.x, pos.y, pos.z, 0, 1) || ParticleBudget.request(priority, 1) == 0) {
+            clearState();
+            return;
+        }
+
         Particle particle = MinecraftClient.getInstance().particleManager.addParticle(particleType, pos.x, pos.y, pos.z, velocity.x, velocity.y, velocity.z);
         particle.setMaxAge(maxAge);
 
@@ -234,7 +262,11 @@ public class ClientParticles {
      * @param deviation A random offset from the line that particles can have
      */
     public static void spawnLine(ParticleEffect particle, World world, Vec3d start, Vec3d end, float deviation) {
-        spawnLineInner(particle, world, start, end, deviation);
+        if (ParticleCulling.isVisible(Math.min(start.x, end.x) - deviation / 2, Math.min(start.y, end.y) - deviation / 2, Math.min(start.z, end.z) - deviation / 2,
+                Math.max(start.x, end.x) + deviation / 2, Math.max(start.y, end.y) + deviation / 2, Math.max(start.z, end.z) + deviation / 2, particleCount)) {
+            spawnLineInner(particle, world, start, end, deviation);
+        }
+
         clearState();
     }
 
@@ -249,6 +281,11 @@ public class ClientParticles {
      * @param deviation A random offset from the line that particles can have
      */
     public static void spawnCubeOutline(ParticleEffect particle, World world, Vec3d origin, float size, float deviation) {
+        if (!ParticleCulling.isVisible(origin.x - deviation / 2, origin.y - deviation / 2, origin.z - deviation / 2,
+                origin.x + size + deviation / 2, origin.y + size + deviation / 2, origin.z + size + deviation / 2, particleCount * 12)) {
+            clearState();
+            return;
+        }
 
         spawnLineInner(particle, world, origin, origin.add(size, 0, 0), deviation);
         spawnLineInner(particle, world, origin.add(size, 0, 0), origin.add(size, 0, size), deviation);
@@ -272,10 +309,22 @@ public class ClientParticles {
         clearState();
     }
 
+    private static int request(double x, double y, double z, double deviation) {
+        return request(x - deviation, y - deviation, z - deviation, x + deviation, y + deviation, z + deviation);
+    }
+
+    private static int request(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        if (!ParticleCulling.isVisible(minX, minY, minZ, maxX, maxY, maxZ, particleCount)) return 0;
+        return ParticleBudget.request(priority, particleCount);
+    }
+
     private static void spawnLineInner(ParticleEffect particle, World world, Vec3d start, Vec3d end, float deviation) {
-        Vec3d increment = end.subtract(start).multiply(1f / (float) particleCount);
+        final int count = ParticleBudget.request(priority, particleCount);
+        if (count == 0) return;
+
+        Vec3d increment = end.subtract(start).multiply(1f / (float) count);
 
-        for (int i = 0; i < particleCount; i++) {
+        for (int i = 0; i < count; i++) {
             start = VectorRandomUtils.getRandomOffset(world, start, deviation);
             addParticle(particle, world, start);
             start = start.add(increment);
@@ -0,0 +1,230 @@
+package io.wispforest.owo.particles;
+
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+import net.fabricmc.fabric.api.client.rendering.v1.WorldRenderEvents;
+
+import java.util.ArrayDeque;
+
+/**
+ * Limits the amount of particles spawned by {@link ClientParticles}
+ * and particle systems per frame. Every frame, each priority may use up to
+ * its share of the frame budget - lower priorities get smaller shares, so
+ * that higher priorities always have some budget left
+ * <p>
+ * Particle counts requested via {@link #request(ParticlePriority, int)} are
+ * clamped to the remaining budget. Whole tasks submitted via {@link #submit(ParticlePriority, int, Runnable)}
+ * are deferred to one of the following frames instead, and dropped if they
+ * still do not fit after {@link #setMaxDeferFrames(int)} frames. Deferred tasks
+ * are retried highest priority first, {@link ParticlePriority#CRITICAL} tasks
+ * are never deferred
+ */
+@Environment(EnvType.CLIENT)
+public final class ParticleBudget {
+
+    private static int frameBudget = 4096;
+    private static final float[] SHARES = {.5f, .8f, 1f, Float.POSITIVE_INFINITY};
+
+    private static int maxDeferFrames = 10;
+    private static int maxDeferredTasks = 1024;
+
+    @SuppressWarnings("unchecked")
+    private static final ArrayDeque<DeferredTask>[] DEFERRED = new ArrayDeque[ParticlePriority.values().length];
+    private static int deferredCount = 0;
+    private static long frame = 0;
+    private static int spentThisFrame = 0;
+
+    private static long requestedParticles = 0;
+    private static long grantedParticles = 0;
+    private static long droppedParticles = 0;
+    private static long deferredTasks = 0;
+    private static long droppedTasks = 0;
+
+    private ParticleBudget() {}
+
+    /**
+     * Requests the given amount of particles from
+     * the budget of the current frame
+     *
+     * @param priority The priority of the particles
+     * @param count    The amount of particles to spawn
+     * @return The amount of particles which may actually be spawned,
+     * anything above that should be dropped
+     */
+    public static int request(ParticlePriority priority, int count) {
+        final int granted = Math.max(0, Math.min(count, available(priority)));
+
+        spentThisFrame += granted;
+        requestedParticles += count;
+        grantedParticles += granted;
+        droppedParticles += count - granted;
+
+        return granted;
+    }
+
+    /**
+     * Runs the given task immediately if the given amount of particles
+     * is available in the current frame, or defers it otherwise
+     *
+     * @param priority The priority of the task
+     * @param cost     The amount of particles the task is expected to spawn
+     * @param task     The task spawning the particles
+     */
+    public static void submit(ParticlePriority priority, int cost, Runnable task) {
+        // tasks may only skip the queue if nothing of the same
+        // or a higher priority is waiting, critical ones always can
+        if (priority == ParticlePriority.CRITICAL || (!hasDeferredAtOrAbove(priority) && fits(priority, cost))) {
+            spend(cost);
+            task.run();
+            return;
+        }
+
+        if (deferredCount >= maxDeferredTasks && !evictBelow(priority)) {
+            droppedTasks++;
+            droppedParticles += cost;
+            return;
+        }
+
+        DEFERRED[priority.ordinal()].add(new DeferredTask(priority, cost, task, frame));
+        deferredCount++;
+        deferredTasks++;
+    }
+
+    private static boolean hasDeferredAtOrAbove(ParticlePriority priority) {
+        for (int i = priority.ordinal(); i < DEFERRED.length; i++) {
+            if (!DEFERRED[i].isEmpty()) return true;
+        }
+        return false;
+    }
+
+    // makes room for a task by dropping the most
+    // recent one of the lowest priority below it
+    private static boolean evictBelow(ParticlePriority priority) {
+        for (int i = 0; i < priority.ordinal(); i++) {
+            final var evicted = DEFERRED[i].pollLast();
+            if (evicted == null) continue;
+
+            deferredCount--;
+            droppedTasks++;
+            droppedParticles += evicted.cost;
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean fits(ParticlePriority priority, int cost) {
+        // tasks larger than the share of their priority would never
+        // fit, so they are allowed to use up an otherwise empty frame
+        return cost <= available(priority) || spentThisFrame == 0;
+    }
+
+    private static int available(ParticlePriority priority) {
+        final float share = SHARES[priority.ordinal()];
+        if (Float.isInfinite(share)) return Integer.MAX_VALUE;
+
+        return (int) (frameBudget * share) - spentThisFrame;
+    }
+
+    private static void spend(int cost) {
+        spentThisFrame += cost;
+        requestedParticles += cost;
+        grantedParticles += cost;
+    }
+
+    private static void beginFrame() {
+        frame++;
+        spentThisFrame = 0;
+
+        for (int priority = DEFERRED.length - 1; priority >= 0; priority--) {
+            final var queue = DEFERRED[priority];
+
+            for (int i = queue.size(); i > 0; i--) {
+                final var task = queue.poll();
+
+                if (fits(task.priority, task.cost)) {
+                    spend(task.cost);
+                    task.task.run();
+                    deferredCount--;
+                } else if (frame - task.submittedFrame >= maxDeferFrames) {
+                    droppedTasks++;
+                    droppedParticles += task.cost;
+                    deferredCount--;
+                } else {
+                    queue.add(task);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param budget The total amount of particles which may be spawned per frame
+     */
+    public static void setFrameBudget(int budget) {
+        frameBudget = budget;
+    }
+
+    /**
+     * @param priority The priority to configure, {@link ParticlePriority#CRITICAL}
+     *                 is never limited
+     * @param share    The share of the frame budget the given priority may use up
+     */
+    public static void setShare(ParticlePriority priority, float share) {
+        if (priority == ParticlePriority.CRITICAL) throw new IllegalArgumentException("Critical particles are never limited");
+        SHARES[priority.ordinal()] = share;
+    }
+
+    /**
+     * @param frames The amount of frames a task may be deferred for before it is dropped
+     */
+    public static void setMaxDeferFrames(int frames) {
+        maxDeferFrames = frames;
+    }
+
+    /**
+     * @param tasks The maximum amount of deferred tasks, tasks
+     *              submitted beyond that are dropped immediately
+     */
+    public static void setMaxDeferredTasks(int tasks) {
+        maxDeferredTasks = tasks;
+    }
+
+    /**
+     * @return A snapshot of the statistics collected since the last {@link #resetStats()}
+     */
+    public static Stats stats() {
+        return new Stats(requestedParticles, grantedParticles, droppedParticles, deferredTasks, droppedTasks, deferredCount, spentThisFrame);
+    }
+
+    public static void resetStats() {
+        requestedParticles = 0;
+        grantedParticles = 0;
+        droppedParticles = 0;
+        deferredTasks = 0;
+        droppedTasks = 0;
+    }
+
+    /**
+     * @param requestedParticles The total amount of particles requested
+     * @param grantedParticles   The total amount of particles granted
+     * @param droppedParticles   The total amount of particles dropped, including dropped tasks
+     * @param deferredTasks      The total amount of tasks which were deferred
+     * @param droppedTasks       The total amount of tasks which were dropped
+     * @param pendingTasks       The amount of tasks currently waiting for budget
+     * @param spentThisFrame     The amount of particles spawned in the current frame
+     */
+    public record Stats(long requestedParticles, long grantedParticles, long droppedParticles,
+                        long deferredTasks, long droppedTasks, int pendingTasks, int spentThisFrame) {}
+
+    private record DeferredTask(ParticlePriority priority, int cost, Runnable task, long submittedFrame) {}
+
+    static {
+        for (int i = 0; i < DEFERRED.length; i++) DEFERRED[i] = new ArrayDeque<>();
+
+        WorldRenderEvents.START.register(context -> beginFrame());
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> {
+            for (var queue : DEFERRED) queue.clear();
+            deferredCount = 0;
+        });
+    }
+}
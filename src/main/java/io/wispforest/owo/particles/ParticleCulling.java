@@ -0,0 +1,134 @@
+package io.wispforest.owo.particles;
+
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+import net.fabricmc.fabric.api.client.rendering.v1.WorldRenderEvents;
+import net.minecraft.client.render.Frustum;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.Vec3d;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Culls particle spawns which could not be seen from the current camera,
+ * before any particles are created. Checks are done once per spawn call
+ * against the bounds of the whole call - either all of its particles are
+ * spawned, or none of them are
+ * <p>
+ * A call is culled if its bounds are further away from the camera than
+ * {@link #setMaxDistance(double)}, which defaults to the 32 blocks beyond
+ * which vanilla discards particles anyway, or if its bounds expanded by
+ * {@link #setFrustumMargin(double)} lie outside the frustum of the last rendered frame
+ */
+@Environment(EnvType.CLIENT)
+public final class ParticleCulling {
+
+    private static double maxDistance = 32;
+    private static boolean frustumCulling = true;
+    private static double frustumMargin = 2;
+
+    private static @Nullable Frustum frustum = null;
+    private static @Nullable Vec3d cameraPos = null;
+
+    private static long testedParticles = 0;
+    private static long distanceCulledParticles = 0;
+    private static long frustumCulledParticles = 0;
+
+    private ParticleCulling() {}
+
+    /**
+     * Tests whether particles spawned within the
+     * given bounds could be visible to the camera
+     *
+     * @param count The amount of particles the caller is about to spawn,
+     *              used for statistics only
+     * @return {@code true} if the particles should be spawned
+     */
+    public static boolean isVisible(double minX, double minY, double minZ, double maxX, double maxY, double maxZ, int count) {
+        testedParticles += count;
+        if (cameraPos == null) return true;
+
+        final double dx = Math.max(0, Math.max(minX - cameraPos.x, cameraPos.x - maxX));
+        final double dy = Math.max(0, Math.max(minY - cameraPos.y, cameraPos.y - maxY));
+        final double dz = Math.max(0, Math.max(minZ - cameraPos.z, cameraPos.z - maxZ));
+
+        if (dx * dx + dy * dy + dz * dz > maxDistance * maxDistance) {
+            distanceCulledParticles += count;
+            return false;
+        }
+
+        if (frustumCulling && frustum != null && !frustum.isVisible(new Box(minX, minY, minZ, maxX, maxY, maxZ).expand(frustumMargin))) {
+            frustumCulledParticles += count;
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Tests whether particles spawned within {@code deviation}
+     * of the given position could be visible to the camera
+     *
+     * @see #isVisible(double, double, double, double, double, double, int)
+     */
+    public static boolean isVisible(double x, double y, double z, double deviation, int count) {
+        return isVisible(x - deviation, y - deviation, z - deviation, x + deviation, y + deviation, z + deviation, count);
+    }
+
+    /**
+     * @param distance The maximum distance from the camera at which particles are spawned
+     */
+    public static void setMaxDistance(double distance) {
+        maxDistance = distance;
+    }
+
+    /**
+     * @param enabled Whether particles outside the camera frustum should be culled
+     */
+    public static void setFrustumCulling(boolean enabled) {
+        frustumCulling = enabled;
+    }
+
+    /**
+     * Particles move and the camera turns, so spawns slightly outside the frustum
+     * may well become visible during their lifetime - this margin controls how far
+     * outside of it particles are still spawned
+     *
+     * @param margin The amount of blocks to expand spawn bounds by for the frustum check
+     */
+    public static void setFrustumMargin(double margin) {
+        frustumMargin = margin;
+    }
+
+    /**
+     * @return A snapshot of the statistics collected since the last {@link #resetStats()}
+     */
+    public static Stats stats() {
+        return new Stats(testedParticles, distanceCulledParticles, frustumCulledParticles);
+    }
+
+    public static void resetStats() {
+        testedParticles = 0;
+        distanceCulledParticles = 0;
+        frustumCulledParticles = 0;
+    }
+
+    /**
+     * @param testedParticles         The total amount of particles tested
+     * @param distanceCulledParticles The total amount of particles culled for being too far away
+     * @param frustumCulledParticles  The total amount of particles culled for being outside the frustum
+     */
+    public record Stats(long testedParticles, long distanceCulledParticles, long frustumCulledParticles) {}
+
+    static {
+        WorldRenderEvents.AFTER_SETUP.register(context -> {
+            frustum = context.frustum();
+            cameraPos = context.camera().getPos();
+        });
+
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> {
+            frustum = null;
+            cameraPos = null;
+        });
+    }
+}
@@ -0,0 +1,203 @@
+package io.wispforest.owo.particles;
+
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.particle.ParticleEffect;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.World;
+
+import java.util.Random;
+
+/**
+ * A reusable, self-contained alternative to the global state of
+ * {@link ClientParticles}. An emitter keeps its own count, velocity
+ * and priority, so it can be created once per call site and reused
+ * for every spawn - unlike {@link ClientParticles}, nothing is reset
+ * after an operation and nothing leaks between call sites
+ * <p>
+ * All positions and velocities are computed in primitive doubles and
+ * passed to {@link World#addParticle(ParticleEffect, double, double, double, double, double, double)}
+ * directly, so spawning does not allocate per particle
+ * <p>
+ * Emitters are not thread-safe, they are meant
+ * to be used on the client thread only
+ */
+@Environment(EnvType.CLIENT)
+public final class ParticleEmitter {
+
+    private ParticleEffect particle;
+    private int count = 1;
+
+    private double velocityX = 0, velocityY = 0, velocityZ = 0;
+    private double randomVelocity = 0;
+
+    private ParticlePriority priority = ParticlePriority.NORMAL;
+
+    private ParticleEmitter(ParticleEffect particle) {
+        this.particle = particle;
+    }
+
+    /**
+     * Creates a new emitter which spawns the given particle
+     *
+     * @param particle The particle to spawn
+     * @return The created emitter
+     */
+    public static ParticleEmitter of(ParticleEffect particle) {
+        return new ParticleEmitter(particle);
+    }
+
+    /**
+     * @param particle The particle to spawn from now on
+     */
+    public ParticleEmitter particle(ParticleEffect particle) {
+        this.particle = particle;
+        return this;
+    }
+
+    /**
+     * @param count How many particles to spawn per operation
+     */
+    public ParticleEmitter count(int count) {
+        this.count = count;
+        return this;
+    }
+
+    /**
+     * Sets the velocity added to each spawned particle
+     */
+    public ParticleEmitter velocity(double x, double y, double z) {
+        this.velocityX = x;
+        this.velocityY = y;
+        this.velocityZ = z;
+        return this;
+    }
+
+    public ParticleEmitter velocity(Vec3d velocity) {
+        return this.velocity(velocity.x, velocity.y, velocity.z);
+    }
+
+    /**
+     * Makes every particle use a random velocity, added
+     * on top of the one set via {@link #velocity(double, double, double)}
+     *
+     * @param scalar The scalar to use for the generated velocities which
+     *               nominally range from -0.5 to 0.5 on each axis,
+     *               {@code 0} to disable random velocities
+     */
+    public ParticleEmitter randomVelocity(double scalar) {
+        this.randomVelocity = scalar;
+        return this;
+    }
+
+    /**
+     * @param priority The priority with which particles are requested from the {@link ParticleBudget}
+     */
+    public ParticleEmitter priority(ParticlePriority priority) {
+        this.priority = priority;
+        return this;
+    }
+
+    public int count() {
+        return this.count;
+    }
+
+    /**
+     * Spawns particles at the given location with a maximum offset of {@code deviation}
+     */
+    public void spawn(World world, double x, double y, double z, double deviation) {
+        this.spawnPrecise(world, x, y, z, deviation, deviation, deviation);
+    }
+
+    public void spawn(World world, Vec3d pos, double deviation) {
+        this.spawnPrecise(world, pos.x, pos.y, pos.z, deviation, deviation, deviation);
+    }
+
+    /**
+     * Spawns particles at the given location with a separate maximum offset per axis
+     */
+    public void spawnPrecise(World world, double x, double y, double z, double deviationX, double deviationY, double deviationZ) {
+        if (!ParticleCulling.isVisible(x - deviationX / 2, y - deviationY / 2, z - deviationZ / 2,
+                x + deviationX / 2, y + deviationY / 2, z + deviationZ / 2, this.count)) return;
+
+        final var random = world.getRandom();
+        final int granted = ParticleBudget.request(this.priority, this.count);
+
+        for (int i = 0; i < granted; i++) {
+            this.emit(world, random,
+                    x + (random.nextDouble() - .5) * deviationX,
+                    y + (random.nextDouble() - .5) * deviationY,
+                    z + (random.nextDouble() - .5) * deviationZ);
+        }
+    }
+
+    /**
+     * Spawns particles with a maximum offset of {@code deviation} from the center of {@code pos}
+     */
+    public void spawnCenteredOnBlock(World world, BlockPos pos, double deviation) {
+        this.spawn(world, pos.getX() + .5, pos.getY() + .5, pos.getZ() + .5, deviation);
+    }
+
+    /**
+     * Spawns particles randomly distributed within {@code pos}
+     */
+    public void spawnWithinBlock(World world, BlockPos pos) {
+        this.spawn(world, pos.getX() + .5, pos.getY() + .5, pos.getZ() + .5, 1);
+    }
+
+    /**
+     * Spawns a line of particles going from the start to the end position
+     *
+     * @param deviation A random offset from the line that particles can have
+     */
+    public void spawnLine(World world, double startX, double startY, double startZ, double endX, double endY, double endZ, double deviation) {
+        if (!ParticleCulling.isVisible(Math.min(startX, endX) - deviation / 2, Math.min(startY, endY) - deviation / 2, Math.min(startZ, endZ) - deviation / 2,
+                Math.max(startX, endX) + deviation / 2, Math.max(startY, endY) + deviation / 2, Math.max(startZ, endZ) + deviation / 2, this.count)) return;
+
+        final var random = world.getRandom();
+        final int granted = ParticleBudget.request(this.priority, this.count);
+        if (granted == 0) return;
+
+        final double stepX = (endX - startX) / granted, stepY = (endY - startY) / granted, stepZ = (endZ - startZ) / granted;
+
+        for (int i = 0; i < granted; i++) {
+            this.emit(world, random,
+                    startX + stepX * i + (random.nextDouble() - .5) * deviation,
+                    startY + stepY * i + (random.nextDouble() - .5) * deviation,
+                    startZ + stepZ * i + (random.nextDouble() - .5) * deviation);
+        }
+    }
+
+    public void spawnLine(World world, Vec3d start, Vec3d end, double deviation) {
+        this.spawnLine(world, start.x, start.y, start.z, end.x, end.y, end.z, deviation);
+    }
+
+    /**
+     * Spawns a single particle at exactly the given position, with the configured
+     * velocity. This does not consult the {@link ParticleBudget}, callers spawning
+     * many particles this way should request them up front
+     */
+    public void emit(World world, double x, double y, double z) {
+        this.emit(world, world.getRandom(), x, y, z);
+    }
+
+    private void emit(World world, Random random, double x, double y, double z) {
+        double velocityX = this.velocityX, velocityY = this.velocityY, velocityZ = this.velocityZ;
+
+        if (this.randomVelocity != 0) {
+            velocityX += (random.nextDouble() - .5) * this.randomVelocity;
+            velocityY += (random.nextDouble() - .5) * this.randomVelocity;
+            velocityZ += (random.nextDouble() - .5) * this.randomVelocity;
+        }
+
+        world.addParticle(this.particle, x, y, z, velocityX, velocityY, velocityZ);
+    }
+
+    /**
+     * @return The priority with which this emitter requests particles
+     */
+    public ParticlePriority priority() {
+        return this.priority;
+    }
+}
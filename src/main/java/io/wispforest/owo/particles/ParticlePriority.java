@@ -0,0 +1,21 @@
+package io.wispforest.owo.particles;
+
+/**
+ * The priority with which particles are spawned when
+ * the {@link ParticleBudget} of the current frame runs low
+ */
+public enum ParticlePriority {
+    /**
+     * Purely decorative particles, first to be limited
+     */
+    LOW,
+    NORMAL,
+    /**
+     * Particles which communicate gameplay information
+     */
+    HIGH,
+    /**
+     * Particles which are never limited
+     */
+    CRITICAL
+}
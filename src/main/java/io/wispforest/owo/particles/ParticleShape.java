@@ -0,0 +1,393 @@
+package io.wispforest.owo.particles;
+
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.World;
+
+import java.util.Collection;
+
+/**
+ * A set of points describing a shape, precomputed once into a primitive
+ * array and then instanced any number of times with a translation, scale and
+ * rotation via {@link #emit(ParticleEmitter, World, double, double, double, double)}
+ * <p>
+ * Shapes are immutable and should be created once and stored, for example
+ * in a static field. Unit shapes are centered on the origin and have a radius
+ * of {@code 1}, unless noted otherwise. Wherever possible, points are evenly
+ * distributed using Fibonacci lattices instead of randomly
+ */
+public final class ParticleShape {
+
+    private static final double GOLDEN_ANGLE = Math.PI * (3 - Math.sqrt(5));
+
+    // interleaved x, y, z
+    private final double[] points;
+
+    // the axis-aligned bounds and the bounding
+    // radius of the points, used for culling
+    private final double[] min = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+    private final double[] max = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+    private final double radius;
+
+    private ParticleShape(double[] points) {
+        this.points = points;
+
+        double radiusSquared = 0;
+        for (int i = 0; i < points.length; i += 3) {
+            for (int axis = 0; axis < 3; axis++) {
+                this.min[axis] = Math.min(this.min[axis], points[i + axis]);
+                this.max[axis] = Math.max(this.max[axis], points[i + axis]);
+            }
+
+            radiusSquared = Math.max(radiusSquared, points[i] * points[i] + points[i + 1] * points[i + 1] + points[i + 2] * points[i + 2]);
+        }
+
+        this.radius = Math.sqrt(radiusSquared);
+    }
+
+    /**
+     * @return The amount of points in this shape
+     */
+    public int size() {
+        return this.points.length / 3;
+    }
+
+    // -------
+    // Shapes
+    // -------
+
+    /**
+     * @param points The amount of points to evenly distribute over the surface of the unit sphere
+     */
+    public static ParticleShape sphereSurface(int points) {
+        final var coordinates = new double[points * 3];
+
+        for (int i = 0; i < points; i++) {
+            final double y = 1 - 2 * (i + .5) / points;
+            final double radius = Math.sqrt(1 - y * y);
+            final double theta = GOLDEN_ANGLE * i;
+
+            coordinates[i * 3] = Math.cos(theta) * radius;
+            coordinates[i * 3 + 1] = y;
+            coordinates[i * 3 + 2] = Math.sin(theta) * radius;
+        }
+
+        return new ParticleShape(coordinates);
+    }
+
+    /**
+     * @param points The amount of points to evenly distribute within the volume of the unit sphere
+     */
+    public static ParticleShape sphereVolume(int points) {
+        final var surface = sphereSurface(points).points;
+
+        // pushing the i-th surface point to the cube root of i/n
+        // distributes points evenly by volume
+        for (int i = 0; i < points; i++) {
+            final double scale = Math.cbrt((i + .5) / points);
+            surface[i * 3] *= scale;
+            surface[i * 3 + 1] *= scale;
+            surface[i * 3 + 2] *= scale;
+        }
+
+        return new ParticleShape(surface);
+    }
+
+    /**
+     * @param points The amount of points on the unit circle in the XZ-plane
+     */
+    public static ParticleShape ring(int points) {
+        final var coordinates = new double[points * 3];
+
+        for (int i = 0; i < points; i++) {
+            final double theta = 2 * Math.PI * i / points;
+            coordinates[i * 3] = Math.cos(theta);
+            coordinates[i * 3 + 2] = Math.sin(theta);
+        }
+
+        return new ParticleShape(coordinates);
+    }
+
+    /**
+     * @param points The amount of points to evenly distribute
+     *               over the unit disk in the XZ-plane
+     */
+    public static ParticleShape disk(int points) {
+        final var coordinates = new double[points * 3];
+
+        for (int i = 0; i < points; i++) {
+            final double radius = Math.sqrt((i + .5) / points);
+            final double theta = GOLDEN_ANGLE * i;
+
+            coordinates[i * 3] = Math.cos(theta) * radius;
+            coordinates[i * 3 + 2] = Math.sin(theta) * radius;
+        }
+
+        return new ParticleShape(coordinates);
+    }
+
+    /**
+     * @param points The amount of points on the helix
+     * @param turns  The amount of full turns the helix makes, going
+     *               from {@code y = 0} to {@code y = 1} with a radius of {@code 1}
+     */
+    public static ParticleShape helix(int points, double turns) {
+        final var coordinates = new double[points * 3];
+
+        for (int i = 0; i < points; i++) {
+            final double progress = points == 1 ? 0 : i / (double) (points - 1);
+            final double theta = 2 * Math.PI * turns * progress;
+
+            coordinates[i * 3] = Math.cos(theta);
+            coordinates[i * 3 + 1] = progress;
+            coordinates[i * 3 + 2] = Math.sin(theta);
+        }
+
+        return new ParticleShape(coordinates);
+    }
+
+    /**
+     * @param points        The amount of points along the curve
+     * @param controlPoints The control points of the bezier curve, in shape space
+     */
+    public static ParticleShape bezier(int points, Vec3d... controlPoints) {
+        if (controlPoints.length < 2) throw new IllegalArgumentException("A bezier curve needs at least two control points");
+
+        final var coordinates = new double[points * 3];
+        final var scratch = new double[controlPoints.length * 3];
+
+        for (int i = 0; i < points; i++) {
+            final double t = points == 1 ? 0 : i / (double) (points - 1);
+
+            for (int j = 0; j < controlPoints.length; j++) {
+                scratch[j * 3] = controlPoints[j].x;
+                scratch[j * 3 + 1] = controlPoints[j].y;
+                scratch[j * 3 + 2] = controlPoints[j].z;
+            }
+
+            // de Casteljau's algorithm
+            for (int level = controlPoints.length - 1; level > 0; level--) {
+                for (int j = 0; j < level * 3; j++) {
+                    scratch[j] = MathHelper.lerp(t, scratch[j], scratch[j + 3]);
+                }
+            }
+
+            coordinates[i * 3] = scratch[0];
+            coordinates[i * 3 + 1] = scratch[1];
+            coordinates[i * 3 + 2] = scratch[2];
+        }
+
+        return new ParticleShape(coordinates);
+    }
+
+    /**
+     * @param pointsPerEdge The amount of points on each of the 12 edges
+     *                      of the unit cube, which spans from {@code 0} to {@code 1}
+     */
+    public static ParticleShape boxEdges(int pointsPerEdge) {
+        final var coordinates = new DoubleArrayList(pointsPerEdge * 12 * 3);
+
+        for (int a = 0; a <= 1; a++) {
+            for (int b = 0; b <= 1; b++) {
+                addEdge(coordinates, 0, a, b, 1, a, b, pointsPerEdge);
+                addEdge(coordinates, a, 0, b, a, 1, b, pointsPerEdge);
+                addEdge(coordinates, a, b, 0, a, b, 1, pointsPerEdge);
+            }
+        }
+
+        return new ParticleShape(coordinates.toDoubleArray());
+    }
+
+    /**
+     * @param pointsPerAxis The amount of points along each axis of the grid
+     *                      placed on each of the 6 faces of the unit cube,
+     *                      which spans from {@code 0} to {@code 1}
+     */
+    public static ParticleShape boxFaces(int pointsPerAxis) {
+        final var coordinates = new DoubleArrayList(pointsPerAxis * pointsPerAxis * 6 * 3);
+
+        for (int u = 0; u < pointsPerAxis; u++) {
+            for (int v = 0; v < pointsPerAxis; v++) {
+                final double a = (u + .5) / pointsPerAxis, b = (v + .5) / pointsPerAxis;
+
+                for (int side = 0; side <= 1; side++) {
+                    coordinates.add(side);
+                    coordinates.add(a);
+                    coordinates.add(b);
+
+                    coordinates.add(a);
+                    coordinates.add(side);
+                    coordinates.add(b);
+
+                    coordinates.add(a);
+                    coordinates.add(b);
+                    coordinates.add(side);
+                }
+            }
+        }
+
+        return new ParticleShape(coordinates.toDoubleArray());
+    }
+
+    /**
+     * Creates the outline of the given set of blocks, meaning all edges
+     * which are on the silhouette of the set - edges between two blocks
+     * of the set which lie in the same plane are left out
+     * <p>
+     * The created shape is in world space, so instance it
+     * at the origin and with a scale of {@code 1}
+     *
+     * @param blocks        The blocks to outline
+     * @param pointsPerEdge The amount of points on each block edge
+     */
+    public static ParticleShape voxelOutline(Collection<BlockPos> blocks, int pointsPerEdge) {
+        final LongSet occupied = new LongOpenHashSet(blocks.size());
+        for (var pos : blocks) occupied.add(pos.asLong());
+
+        final LongSet[] visitedEdges = {new LongOpenHashSet(), new LongOpenHashSet(), new LongOpenHashSet()};
+        final var coordinates = new DoubleArrayList();
+
+        for (var pos : blocks) {
+            final int x = pos.getX(), y = pos.getY(), z = pos.getZ();
+
+            for (int a = 0; a <= 1; a++) {
+                for (int b = 0; b <= 1; b++) {
+                    // edges along x, y and z - each identified by their
+                    // minimum corner and axis, so they are only visited once
+                    tryAddVoxelEdge(occupied, visitedEdges, coordinates, x, y + a, z + b, 0, pointsPerEdge);
+                    tryAddVoxelEdge(occupied, visitedEdges, coordinates, x + a, y, z + b, 1, pointsPerEdge);
+                    tryAddVoxelEdge(occupied, visitedEdges, coordinates, x + a, y + b, z, 2, pointsPerEdge);
+                }
+            }
+        }
+
+        return new ParticleShape(coordinates.toDoubleArray());
+    }
+
+    private static void tryAddVoxelEdge(LongSet occupied, LongSet[] visitedEdges, DoubleArrayList coordinates, int x, int y, int z, int axis, int pointsPerEdge) {
+        if (!visitedEdges[axis].add(BlockPos.asLong(x, y, z))) return;
+
+        // the four blocks around the edge, in cyclic order
+        final boolean b0, b1, b2, b3;
+        switch (axis) {
+            case 0 -> {
+                b0 = occupied.contains(BlockPos.asLong(x, y - 1, z - 1));
+                b1 = occupied.contains(BlockPos.asLong(x, y, z - 1));
+                b2 = occupied.contains(BlockPos.asLong(x, y, z));
+                b3 = occupied.contains(BlockPos.asLong(x, y - 1, z));
+            }
+            case 1 -> {
+                b0 = occupied.contains(BlockPos.asLong(x - 1, y, z - 1));
+                b1 = occupied.contains(BlockPos.asLong(x, y, z - 1));
+                b2 = occupied.contains(BlockPos.asLong(x, y, z));
+                b3 = occupied.contains(BlockPos.asLong(x - 1, y, z));
+            }
+            default -> {
+                b0 = occupied.contains(BlockPos.asLong(x - 1, y - 1, z));
+                b1 = occupied.contains(BlockPos.asLong(x, y - 1, z));
+                b2 = occupied.contains(BlockPos.asLong(x, y, z));
+                b3 = occupied.contains(BlockPos.asLong(x - 1, y, z));
+            }
+        }
+
+        final int count = (b0 ? 1 : 0) + (b1 ? 1 : 0) + (b2 ? 1 : 0) + (b3 ? 1 : 0);
+
+        // flat edges - either fully inside, fully outside or
+        // between two adjacent blocks on the same plane
+        if (count == 0 || count == 4 || (count == 2 && b0 != b2)) return;
+
+        addEdge(coordinates, x, y, z, x + (axis == 0 ? 1 : 0), y + (axis == 1 ? 1 : 0), z + (axis == 2 ? 1 : 0), pointsPerEdge);
+    }
+
+    private static void addEdge(DoubleArrayList coordinates, double fromX, double fromY, double fromZ, double toX, double toY, double toZ, int points) {
+        for (int i = 0; i < points; i++) {
+            final double t = points == 1 ? .5 : i / (double) (points - 1);
+            coordinates.add(MathHelper.lerp(t, fromX, toX));
+            coordinates.add(MathHelper.lerp(t, fromY, toY));
+            coordinates.add(MathHelper.lerp(t, fromZ, toZ));
+        }
+    }
+
+    // --------
+    // Emitting
+    // --------
+
+    /**
+     * Emits one particle at every point of this shape
+     *
+     * @param emitter The emitter to spawn particles with
+     * @param world   The world to spawn the particles in
+     * @param x       The x coordinate to translate the shape to
+     * @param y       The y coordinate to translate the shape to
+     * @param z       The z coordinate to translate the shape to
+     * @param scale   The scale to apply to the shape
+     */
+    @Environment(EnvType.CLIENT)
+    public void emit(ParticleEmitter emitter, World world, double x, double y, double z, double scale) {
+        this.emit(emitter, world, x, y, z, scale, scale, scale, 0, 0);
+    }
+
+    /**
+     * Emits one particle at every point of this shape. The shape is first
+     * scaled, then rotated by {@code pitch} around the x-axis and by {@code yaw}
+     * around the y-axis and then translated
+     * <p>
+     * If the {@link ParticleBudget} does not grant enough particles, an evenly
+     * spaced subset of the points is emitted
+     *
+     * @param yaw   The rotation around the y-axis, in radians
+     * @param pitch The rotation around the x-axis, in radians
+     */
+    @Environment(EnvType.CLIENT)
+    public void emit(ParticleEmitter emitter, World world, double x, double y, double z,
+                     double scaleX, double scaleY, double scaleZ, double yaw, double pitch) {
+        final int size = this.size();
+        if (size == 0 || !this.isVisible(x, y, z, scaleX, scaleY, scaleZ, yaw, pitch)) return;
+
+        final int granted = ParticleBudget.request(emitter.priority(), size);
+        if (granted == 0) return;
+
+        final double yawSin = Math.sin(yaw), yawCos = Math.cos(yaw);
+        final double pitchSin = Math.sin(pitch), pitchCos = Math.cos(pitch);
+        final double stride = size / (double) granted;
+
+        for (int i = 0; i < granted; i++) {
+            final int point = (int) (i * stride) * 3;
+
+            final double px = this.points[point] * scaleX;
+            final double py = this.points[point + 1] * scaleY;
+            final double pz = this.points[point + 2] * scaleZ;
+
+            final double ry = py * pitchCos - pz * pitchSin;
+            final double rz = py * pitchSin + pz * pitchCos;
+
+            emitter.emit(world,
+                    x + px * yawCos + rz * yawSin,
+                    y + ry,
+                    z - px * yawSin + rz * yawCos);
+        }
+    }
+
+    @Environment(EnvType.CLIENT)
+    private boolean isVisible(double x, double y, double z, double scaleX, double scaleY, double scaleZ, double yaw, double pitch) {
+        if (yaw == 0 && pitch == 0) {
+            // unrotated shapes can use their exact bounds, scales
+            // may be negative so the extremes need to be sorted
+            return ParticleCulling.isVisible(
+                    x + Math.min(this.min[0] * scaleX, this.max[0] * scaleX), y + Math.min(this.min[1] * scaleY, this.max[1] * scaleY), z + Math.min(this.min[2] * scaleZ, this.max[2] * scaleZ),
+                    x + Math.max(this.min[0] * scaleX, this.max[0] * scaleX), y + Math.max(this.min[1] * scaleY, this.max[1] * scaleY), z + Math.max(this.min[2] * scaleZ, this.max[2] * scaleZ),
+                    this.size());
+        }
+
+        // rotation preserves distances from the origin, so the
+        // scaled bounding sphere contains the rotated shape
+        final double extent = this.radius * Math.max(Math.abs(scaleX), Math.max(Math.abs(scaleY), Math.abs(scaleZ)));
+        return ParticleCulling.isVisible(x, y, z, extent, this.size());
+    }
+}
@@ -0,0 +1,17 @@
+package io.wispforest.owo.particles.systems;
+
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.World;
+
+public interface BulkParticleSystemExecutor<T> {
+    /**
+     * Called when particles should be displayed at all
+     * of the given positions in the given world, with
+     * the given data as additional context
+     *
+     * @param world     The world to display in
+     * @param positions The positions to display at
+     * @param data      The data to display with
+     */
+    void executeParticleSystem(World world, Vec3d[] positions, T data);
+}
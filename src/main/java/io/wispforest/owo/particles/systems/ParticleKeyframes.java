@@ -0,0 +1,66 @@
+package io.wispforest.owo.particles.systems;
+
+import it.unimi.dsi.fastutil.floats.FloatArrayList;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import net.minecraft.util.math.MathHelper;
+
+/**
+ * A simple piecewise-linear curve for animating values
+ * in {@link TimedParticleExecutor}s, indexed by progress
+ * <pre>{@code
+ * var radius = ParticleKeyframes.create().at(0, 0).at(.3f, 2).at(1, 3);
+ * radius.sample(progress);
+ * }</pre>
+ */
+public final class ParticleKeyframes {
+
+    private final FloatArrayList positions = new FloatArrayList();
+    private final DoubleArrayList values = new DoubleArrayList();
+
+    private ParticleKeyframes() {}
+
+    public static ParticleKeyframes create() {
+        return new ParticleKeyframes();
+    }
+
+    /**
+     * Adds a keyframe, keyframes must be added in ascending order
+     *
+     * @param progress The progress at which the curve has the given value
+     * @param value    The value of the curve at the given progress
+     */
+    public ParticleKeyframes at(float progress, double value) {
+        if (!this.positions.isEmpty() && progress < this.positions.getFloat(this.positions.size() - 1)) {
+            throw new IllegalArgumentException("Keyframes must be added in ascending order");
+        }
+
+        this.positions.add(progress);
+        this.values.add(value);
+        return this;
+    }
+
+    /**
+     * Samples this curve, linearly interpolating between the
+     * surrounding keyframes and clamping beyond the first and last one
+     *
+     * @param progress The progress to sample at
+     * @return The value of the curve at the given progress
+     */
+    public double sample(float progress) {
+        final int size = this.positions.size();
+        if (size == 0) return 0;
+
+        if (progress <= this.positions.getFloat(0)) return this.values.getDouble(0);
+
+        for (int i = 1; i < size; i++) {
+            final float end = this.positions.getFloat(i);
+            if (progress > end) continue;
+
+            final float start = this.positions.getFloat(i - 1);
+            final float delta = end == start ? 1 : (progress - start) / (end - start);
+            return MathHelper.lerp(delta, this.values.getDouble(i - 1), this.values.getDouble(i));
+        }
+
+        return this.values.getDouble(size - 1);
+    }
+}
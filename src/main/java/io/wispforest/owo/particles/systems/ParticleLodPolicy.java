@@ -0,0 +1,68 @@
+package io.wispforest.owo.particles.systems;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * Decides which players a {@link ParticleSystem} invocation
+ * is sent to, based on their distance to it. Players beyond
+ * the maximum distance never receive it, players beyond the thinning
+ * distance only receive it with some probability, and players beyond the
+ * reduction distance receive reduced-fidelity data instead
+ * <p>
+ * All distances are infinite by default
+ *
+ * @param <T> The data class of the particle system
+ * @see ParticleSystem#setLodPolicy(ParticleLodPolicy)
+ */
+public final class ParticleLodPolicy<T> {
+
+    double maxDistanceSquared = Double.POSITIVE_INFINITY;
+
+    double thinningDistanceSquared = Double.POSITIVE_INFINITY;
+    float thinningKeepChance = 1;
+
+    double reductionDistanceSquared = Double.POSITIVE_INFINITY;
+    @Nullable UnaryOperator<T> reducer = null;
+
+    private ParticleLodPolicy() {}
+
+    public static <T> ParticleLodPolicy<T> create() {
+        return new ParticleLodPolicy<>();
+    }
+
+    /**
+     * @param distance The distance in blocks beyond
+     *                 which players are never sent the system
+     */
+    public ParticleLodPolicy<T> maxDistance(double distance) {
+        this.maxDistanceSquared = distance * distance;
+        return this;
+    }
+
+    /**
+     * @param distance   The distance in blocks beyond which
+     *                   players are only sent the system randomly
+     * @param keepChance The chance for a player beyond the given
+     *                   distance to still be sent the system
+     */
+    public ParticleLodPolicy<T> thinBeyond(double distance, float keepChance) {
+        this.thinningDistanceSquared = distance * distance;
+        this.thinningKeepChance = keepChance;
+        return this;
+    }
+
+    /**
+     * @param distance The distance in blocks beyond which players
+     *                 are sent reduced data
+     * @param reducer  The function creating reduced data from the full data,
+     *                 called at most once per invocation of the system. {@code null}
+     *                 data is passed through without invoking it
+     */
+    public ParticleLodPolicy<T> reduceBeyond(double distance, UnaryOperator<T> reducer) {
+        this.reductionDistanceSquared = distance * distance;
+        this.reducer = reducer;
+        return this;
+    }
+}
@@ -2,13 +2,18 @@ package io.wispforest.owo.particles.systems;
 
 import io.wispforest.owo.network.NetworkException;
 import io.wispforest.owo.network.serialization.PacketBufSerializer;
+import io.wispforest.owo.particles.ParticleBudget;
+import io.wispforest.owo.particles.ParticlePriority;
 import io.wispforest.owo.util.OwoFreezer;
 import io.wispforest.owo.util.ServicesFrozenException;
 import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Vec3d;
 import net.minecraft.world.World;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 
@@ -38,9 +43,22 @@ public class ParticleSystem<T> {
     final int index;
     final PacketBufSerializer<T> adapter;
     ParticleSystemExecutor<T> handler;
+    @Nullable BulkParticleSystemExecutor<T> bulkHandler = null;
 
     private final boolean permitsContextlessExecution;
 
+    @Nullable ParticleLodPolicy<T> lodPolicy = null;
+
+    boolean precisePositions = false;
+
+    ParticlePriority priority = ParticlePriority.NORMAL;
+    int estimatedParticles = 8;
+
+    long sentCount = 0;
+    long culledCount = 0;
+    long thinnedCount = 0;
+    long reducedCount = 0;
+
     ParticleSystem(ParticleSystemController manager, Class<T> dataClass, int index, PacketBufSerializer<T> adapter, ParticleSystemExecutor<T> handler) {
         OwoFreezer.checkRegister("Particle systems");
 
@@ -66,6 +84,91 @@ public class ParticleSystem<T> {
         this.handler = handler;
     }
 
+    /**
+     * Sets the handler invoked when this system is spawned at many
+     * positions at once via {@link #spawnMany(World, List, Object)}. Without
+     * one, the regular handler is invoked once per position
+     *
+     * @param bulkHandler the code that is run to display the particle system at all positions
+     */
+    public void setBulkHandler(BulkParticleSystemExecutor<T> bulkHandler) {
+        if (OwoFreezer.isFrozen()) throw new ServicesFrozenException("Particle systems can only be changed during mod init");
+        this.bulkHandler = bulkHandler;
+    }
+
+    /**
+     * Configures how executions of this system are accounted
+     * for in the client's {@link ParticleBudget}. Executions
+     * which do not fit in the budget of the current frame
+     * are deferred or eventually dropped
+     *
+     * @param priority           The priority of this system
+     * @param estimatedParticles The amount of particles one execution
+     *                           of this system roughly spawns
+     */
+    public void setBudget(ParticlePriority priority, int estimatedParticles) {
+        this.priority = priority;
+        this.estimatedParticles = estimatedParticles;
+    }
+
+    /**
+     * By default, positions sent to the client are quantized to
+     * a precision of {@code 1/4096} blocks. Systems which need
+     * exact positions can opt out of this here
+     *
+     * @param precisePositions Whether to send positions as full doubles
+     */
+    public void setPrecisePositions(boolean precisePositions) {
+        this.precisePositions = precisePositions;
+    }
+
+    /**
+     * Sets the distance-based level-of-detail policy
+     * used when this system is spawned on the server
+     *
+     * @param lodPolicy The policy to use, or {@code null} to
+     *                  send to all players tracking the position
+     */
+    public void setLodPolicy(@Nullable ParticleLodPolicy<T> lodPolicy) {
+        this.lodPolicy = lodPolicy;
+    }
+
+    /**
+     * @return The amount of times this system was sent to a player
+     */
+    public long sentCount() {
+        return this.sentCount;
+    }
+
+    /**
+     * @return The amount of sends dropped because the
+     * player was beyond the maximum distance
+     */
+    public long culledCount() {
+        return this.culledCount;
+    }
+
+    /**
+     * @return The amount of sends dropped by thinning
+     */
+    public long thinnedCount() {
+        return this.thinnedCount;
+    }
+
+    /**
+     * @return The amount of sends which used reduced data
+     */
+    public long reducedCount() {
+        return this.reducedCount;
+    }
+
+    public void resetStats() {
+        this.sentCount = 0;
+        this.culledCount = 0;
+        this.thinnedCount = 0;
+        this.reducedCount = 0;
+    }
+
     /**
      * Spawns, or displays, whichever term you prefer,
      * this particle system in the given world at the
@@ -82,12 +185,67 @@ public class ParticleSystem<T> {
         if (data == null && !permitsContextlessExecution) throw new IllegalStateException("This particle system does not permit 'null' data");
 
         if (world.isClient) {
-            handler.executeParticleSystem(world, pos, data);
+            ParticleBudget.submit(priority, estimatedParticles, () -> handler.executeParticleSystem(world, pos, data));
         } else {
             manager.sendPacket(this, (ServerWorld) world, pos, data);
         }
     }
 
+    /**
+     * Spawns this particle system at all of the given positions with the
+     * same context data. On the server, the data is serialized only once and
+     * the positions are delta-encoded into a single entry
+     *
+     * <p><b>{@code null} data is only allowed if the data class of this
+     * particle system is {@link Void}</b>
+     *
+     * @param world     The world to execute in
+     * @param positions The positions to execute at
+     * @param data      The context to execute with
+     * @see #setBulkHandler(BulkParticleSystemExecutor)
+     */
+    public void spawnMany(World world, List<Vec3d> positions, @Nullable T data) {
+        if (data == null && !permitsContextlessExecution) throw new IllegalStateException("This particle system does not permit 'null' data");
+        if (positions.isEmpty()) return;
+
+        final var positionArray = positions.toArray(Vec3d[]::new);
+        if (world.isClient) {
+            ParticleBudget.submit(priority, bulkCost(positionArray.length), () -> executeBulk(world, positionArray, data));
+        } else {
+            manager.sendBulkPacket(this, (ServerWorld) world, positionArray, data);
+        }
+    }
+
+    /**
+     * Spawns this particle system at the centers of all given blocks
+     *
+     * @param world          The world to execute in
+     * @param blockPositions The positions to execute at, as
+     *                       packed by {@link BlockPos#asLong()}
+     * @param data           The context to execute with
+     * @see #spawnMany(World, List, Object)
+     */
+    public void spawnMany(World world, long[] blockPositions, @Nullable T data) {
+        final var positions = new ArrayList<Vec3d>(blockPositions.length);
+        for (long packed : blockPositions) {
+            positions.add(new Vec3d(BlockPos.unpackLongX(packed) + .5, BlockPos.unpackLongY(packed) + .5, BlockPos.unpackLongZ(packed) + .5));
+        }
+
+        spawnMany(world, positions, data);
+    }
+
+    int bulkCost(int positions) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) estimatedParticles * positions);
+    }
+
+    void executeBulk(World world, Vec3d[] positions, T data) {
+        if (bulkHandler != null) {
+            bulkHandler.executeParticleSystem(world, positions, data);
+        } else {
+            for (var pos : positions) handler.executeParticleSystem(world, pos, data);
+        }
+    }
+
     /**
      * Convenience wrapper for {@link #spawn(World, Vec3d, Object)}
      * that always passes {@code null} data
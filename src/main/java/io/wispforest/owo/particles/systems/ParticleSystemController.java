@@ -2,32 +2,43 @@ package io.wispforest.owo.particles.systems;
 
 import io.wispforest.owo.Owo;
 import io.wispforest.owo.network.NetworkException;
+import io.wispforest.owo.network.NetworkHealth;
 import io.wispforest.owo.network.OwoHandshake;
 import io.wispforest.owo.network.serialization.PacketBufSerializer;
+import io.wispforest.owo.network.serialization.PositionCollectionSerializer;
+import io.wispforest.owo.particles.ParticleBudget;
 import io.wispforest.owo.util.OwoFreezer;
 import io.wispforest.owo.util.ReflectionUtils;
 import io.wispforest.owo.util.VectorSerializer;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.networking.v1.PacketByteBufs;
 import net.fabricmc.fabric.api.networking.v1.PacketSender;
 import net.fabricmc.fabric.api.networking.v1.PlayerLookup;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
 import net.fabricmc.loader.api.FabricLoader;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.ClientPlayNetworkHandler;
 import net.minecraft.network.PacketByteBuf;
+import net.minecraft.server.network.ServerPlayNetworkHandler;
+import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.world.ServerWorld;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
 import net.minecraft.util.math.Vec3d;
 import org.jetbrains.annotations.ApiStatus;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
 
 /**
  * A controller object that manages and creates {@link ParticleSystem}s.
@@ -50,6 +61,12 @@ public class ParticleSystemController {
     private int maxIndex = 0;
     private final String ownerClassName;
 
+    // keyed by network handler, which unlike the
+    // player entity survives respawning
+    private final Map<ServerPlayNetworkHandler, PendingBatch> pendingBatches = new HashMap<>();
+    private final List<TimedParticleSystem<?>> timedSystems = new ArrayList<>();
+    private final List<SeededParticleSystem<?>> seededSystems = new ArrayList<>();
+
     /**
      * Creates a new controller with the given ID. Duplicate controller IDs
      * are not allowed - if there is a collision, the name of the
@@ -113,14 +130,188 @@ public class ParticleSystemController {
     }
 
     <T> void sendPacket(ParticleSystem<T> particleSystem, ServerWorld world, Vec3d pos, T data) {
-        PacketByteBuf buf = PacketByteBufs.create();
-        buf.writeVarInt(particleSystem.index);
-        VectorSerializer.write(pos, buf);
-        particleSystem.adapter.serializer().accept(buf, data);
+        final var players = PlayerLookup.tracking(world, new BlockPos(pos));
+        if (players.isEmpty()) return;
+
+        this.distribute(particleSystem, world, players, player -> player.squaredDistanceTo(pos), data, entryData -> encodeEntry(particleSystem, pos, entryData));
+    }
+
+    <T> void sendBulkPacket(ParticleSystem<T> particleSystem, ServerWorld world, Vec3d[] positions, T data) {
+        final var players = new LinkedHashSet<ServerPlayerEntity>();
+        final var chunks = new LongOpenHashSet();
+
+        for (var pos : positions) {
+            final var chunkPos = new ChunkPos(new BlockPos(pos));
+            if (chunks.add(chunkPos.toLong())) players.addAll(PlayerLookup.tracking(world, chunkPos));
+        }
+
+        if (players.isEmpty()) return;
+
+        // level of detail is based on the position closest to each player
+        this.distribute(particleSystem, world, players, player -> {
+            double closest = Double.POSITIVE_INFINITY;
+            for (var pos : positions) closest = Math.min(closest, player.squaredDistanceTo(pos));
+            return closest;
+        }, data, entryData -> encodeBulkEntry(particleSystem, positions, entryData));
+    }
+
+    private <T> void distribute(ParticleSystem<T> particleSystem, ServerWorld world, Collection<ServerPlayerEntity> players,
+                                ToDoubleFunction<ServerPlayerEntity> distanceSquaredFunction, T data, Function<T, PacketByteBuf> encoder) {
+        final var lod = particleSystem.lodPolicy;
+
+        // entries are encoded once and appended to the batch
+        // of every player, which is sent at the end of the tick
+        PacketByteBuf entry = null;
+        PacketByteBuf reducedEntry = null;
+
+        for (var player : players) {
+            boolean reduced = false;
+
+            if (lod != null) {
+                final double distanceSquared = distanceSquaredFunction.applyAsDouble(player);
 
-        for (var player : PlayerLookup.tracking(world, new BlockPos(pos))) {
-            ServerPlayNetworking.send(player, channelId, buf);
+                if (distanceSquared > lod.maxDistanceSquared) {
+                    particleSystem.culledCount++;
+                    continue;
+                }
+
+                if (distanceSquared > lod.thinningDistanceSquared && world.random.nextFloat() >= lod.thinningKeepChance) {
+                    particleSystem.thinnedCount++;
+                    continue;
+                }
+
+                reduced = lod.reducer != null && distanceSquared > lod.reductionDistanceSquared;
+            }
+
+            if (reduced) {
+                if (reducedEntry == null) reducedEntry = encoder.apply(data == null ? null : lod.reducer.apply(data));
+                this.pendingBatches.computeIfAbsent(player.networkHandler, h -> new PendingBatch()).append(reducedEntry);
+                particleSystem.reducedCount++;
+            } else {
+                if (entry == null) entry = encoder.apply(data);
+                this.pendingBatches.computeIfAbsent(player.networkHandler, h -> new PendingBatch()).append(entry);
+            }
+
+            particleSystem.sentCount++;
+        }
+    }
+
+    private static <T> PacketByteBuf encodeEntry(ParticleSystem<T> particleSystem, Vec3d pos, T data) {
+        PacketByteBuf entry = PacketByteBufs.create();
+        writeHeader(entry, particleSystem, false);
+        if (particleSystem.precisePositions) {
+            VectorSerializer.write(pos, entry);
+        } else {
+            ParticlePositionCodec.write(entry, pos);
         }
+        particleSystem.adapter.serializer().accept(entry, data);
+        return entry;
+    }
+
+    private static <T> PacketByteBuf encodeBulkEntry(ParticleSystem<T> particleSystem, Vec3d[] positions, T data) {
+        PacketByteBuf entry = PacketByteBufs.create();
+        writeHeader(entry, particleSystem, true);
+        if (particleSystem.precisePositions) {
+            entry.writeVarInt(positions.length);
+            for (var pos : positions) VectorSerializer.write(pos, entry);
+        } else {
+            PositionCollectionSerializer.writeVectors(entry, Arrays.asList(positions), false);
+        }
+        particleSystem.adapter.serializer().accept(entry, data);
+        return entry;
+    }
+
+    private static void writeHeader(PacketByteBuf entry, ParticleSystem<?> particleSystem, boolean bulk) {
+        // the lowest bit of the header marks full-precision
+        // positions, the one above it marks bulk entries
+        entry.writeVarInt(particleSystem.index << 2 | (bulk ? 2 : 0) | (particleSystem.precisePositions ? 1 : 0));
+    }
+
+    /**
+     * Registers a timed particle system with the given context data class,
+     * which runs the given executor every tick for the given duration
+     *
+     * @param dataClass The class to use as context data
+     * @param duration  The amount of ticks the system runs for
+     * @param executor  The code that is run every tick to display the system
+     * @param <T>       The type of context data to use
+     * @return The created timed particle system
+     */
+    public <T> TimedParticleSystem<T> registerTimed(Class<T> dataClass, int duration, TimedParticleExecutor<T> executor) {
+        var system = new TimedParticleSystem<>(this, dataClass, duration, executor);
+        timedSystems.add(system);
+        return system;
+    }
+
+    /**
+     * Registers a timed particle system with the given context data class.
+     * This method defers executor registration, so you
+     * must register the executor later in a client entrypoint.
+     *
+     * @param dataClass The class to use as context data
+     * @param duration  The amount of ticks the system runs for
+     * @param <T>       The type of context data to use
+     * @return The created timed particle system
+     * @see TimedParticleSystem#setExecutor(TimedParticleExecutor)
+     */
+    public <T> TimedParticleSystem<T> registerTimedDeferred(Class<T> dataClass, int duration) {
+        var system = new TimedParticleSystem<>(this, dataClass, duration, null);
+        timedSystems.add(system);
+        return system;
+    }
+
+    /**
+     * Registers a seeded particle system with the given context data class.
+     * Instead of shipping randomization results as data, only a seed is
+     * sent, from which the executor's random is derived on every client
+     *
+     * @param dataClass The class to use as context data
+     * @param executor  The code that is run to actually display the system
+     * @param <T>       The type of context data to use
+     * @return The created seeded particle system
+     */
+    public <T> SeededParticleSystem<T> registerSeeded(Class<T> dataClass, SeededParticleExecutor<T> executor) {
+        var system = new SeededParticleSystem<>(this, dataClass, executor);
+        seededSystems.add(system);
+        return system;
+    }
+
+    /**
+     * Registers a seeded particle system with the given context data class.
+     * This method defers executor registration, so you
+     * must register the executor later in a client entrypoint.
+     *
+     * @param dataClass The class to use as context data
+     * @param <T>       The type of context data to use
+     * @return The created seeded particle system
+     * @see SeededParticleSystem#setExecutor(SeededParticleExecutor)
+     */
+    public <T> SeededParticleSystem<T> registerSeededDeferred(Class<T> dataClass) {
+        var system = new SeededParticleSystem<>(this, dataClass, null);
+        seededSystems.add(system);
+        return system;
+    }
+
+    <T> ParticleSystem<T> registerInternal(Class<T> dataClass, PacketBufSerializer<T> adapter, ParticleSystemExecutor<T> executor) {
+        int index = maxIndex++;
+        var system = new ParticleSystem<>(this, dataClass, index, adapter, executor);
+        systemsByIndex.put(index, system);
+        return system;
+    }
+
+    private void flushBatches() {
+        if (this.pendingBatches.isEmpty()) return;
+
+        this.pendingBatches.forEach((handler, batch) -> {
+            final var buf = PacketByteBufs.create();
+            buf.writeVarInt(batch.count);
+            buf.writeBytes(batch.entries);
+
+            NetworkHealth.recordSent(handler.player, buf.readableBytes());
+            handler.sendPacket(ServerPlayNetworking.createS2CPacket(channelId, buf));
+        });
+
+        this.pendingBatches.clear();
     }
 
     private void verify() {
@@ -130,6 +321,18 @@ public class ParticleSystemController {
                     throw new NetworkException("Some particle systems of " + channelId + " don't have handlers registered");
                 }
             }
+
+            for (TimedParticleSystem<?> system : timedSystems) {
+                if (system.executor == null) {
+                    throw new NetworkException("Some timed particle systems of " + channelId + " don't have executors registered");
+                }
+            }
+
+            for (SeededParticleSystem<?> system : seededSystems) {
+                if (system.executor == null) {
+                    throw new NetworkException("Some seeded particle systems of " + channelId + " don't have executors registered");
+                }
+            }
         }
     }
 
@@ -142,24 +345,98 @@ public class ParticleSystemController {
                 controller.verify();
             }
         });
+
+        ServerTickEvents.END_SERVER_TICK.register(server -> {
+            for (ParticleSystemController controller : REGISTERED_CONTROLLERS.values()) {
+                controller.flushBatches();
+                controller.timedSystems.forEach(TimedParticleSystem::pruneExpired);
+            }
+        });
+
+        // active timed sequences hold on to their world,
+        // which must not outlive an integrated server
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> {
+            for (ParticleSystemController controller : REGISTERED_CONTROLLERS.values()) {
+                controller.timedSystems.forEach(TimedParticleSystem::clearActive);
+            }
+        });
+
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> {
+            for (ParticleSystemController controller : REGISTERED_CONTROLLERS.values()) {
+                controller.pendingBatches.remove(handler);
+            }
+        });
+    }
+
+    private static final class PendingBatch {
+        private final PacketByteBuf entries = PacketByteBufs.create();
+        private int count = 0;
+
+        private void append(PacketByteBuf entry) {
+            this.entries.writeBytes(entry, entry.readerIndex(), entry.readableBytes());
+            this.count++;
+        }
     }
 
     @Environment(EnvType.CLIENT)
     private class Client {
         @SuppressWarnings("unchecked")
         private void handler(MinecraftClient client, ClientPlayNetworkHandler networkHandler, PacketByteBuf buf, PacketSender sender) {
-            int index = buf.readVarInt();
+            int count = buf.readVarInt();
+
+            final var systems = new ParticleSystem[count];
+            final var positions = new Vec3d[count][];
+            final var bulk = new boolean[count];
+            final var data = new Object[count];
 
-            Vec3d pos = VectorSerializer.read(buf);
+            for (int i = 0; i < count; i++) {
+                int header = buf.readVarInt();
+                int index = header >>> 2;
 
-            if (maxIndex <= index || index < 0) {
-                Owo.LOGGER.warn("Received unknown particle system index {} on channel {}", index, channelId);
-                return;
+                if (maxIndex <= index || index < 0) {
+                    // entries are not length-prefixed, so the rest of the batch is lost
+                    Owo.LOGGER.warn("Received unknown particle system index {} on channel {}", index, channelId);
+                    count = i;
+                    break;
+                }
+
+                final boolean precise = (header & 1) != 0;
+                bulk[i] = (header & 2) != 0;
+                if (bulk[i]) {
+                    if (precise) {
+                        positions[i] = new Vec3d[buf.readVarInt()];
+                        for (int j = 0; j < positions[i].length; j++) positions[i][j] = VectorSerializer.read(buf);
+                    } else {
+                        positions[i] = PositionCollectionSerializer.readVectors(buf, new ArrayList<>()).toArray(Vec3d[]::new);
+                    }
+                } else {
+                    positions[i] = new Vec3d[]{precise ? VectorSerializer.read(buf) : ParticlePositionCodec.read(buf)};
+                }
+
+                systems[i] = systemsByIndex.get(index);
+                data[i] = systems[i].adapter.deserializer().apply(buf);
             }
 
-            ParticleSystem<Object> system = (ParticleSystem<Object>) systemsByIndex.get(index);
-            var data = system.adapter.deserializer().apply(buf);
-            client.execute(() -> system.handler.executeParticleSystem(client.world, pos, data));
+            final int entryCount = count;
+            client.execute(() -> {
+                for (int i = 0; i < entryCount; i++) {
+                    final var system = (ParticleSystem<Object>) systems[i];
+                    final var entryPositions = positions[i];
+                    final var entryData = data[i];
+
+                    if (!bulk[i]) {
+                        ParticleBudget.submit(system.priority, system.estimatedParticles, () -> {
+                            if (client.world == null) return;
+                            system.handler.executeParticleSystem(client.world, entryPositions[0], entryData);
+                        });
+                    } else {
+                        ParticleBudget.submit(system.priority, system.bulkCost(entryPositions.length), () -> {
+                            if (client.world == null) return;
+                            system.executeBulk(client.world, entryPositions, entryData);
+                        });
+                    }
+                }
+            });
         }
     }
 }
@@ -0,0 +1,24 @@
+package io.wispforest.owo.particles.systems;
+
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.World;
+
+import java.util.Random;
+
+public interface SeededParticleExecutor<T> {
+    /**
+     * Called when particles should be displayed
+     * at the given position in the given world,
+     * with the given data as additional context
+     * <p>
+     * All randomness should be drawn from the passed
+     * random - it is seeded identically on every client,
+     * so all of them display the exact same effect
+     *
+     * @param world  The world to display in
+     * @param pos    The position to display at
+     * @param data   The data to display with
+     * @param random The random to use, derived from the seed of this execution
+     */
+    void executeParticleSystem(World world, Vec3d pos, T data, Random random);
+}
@@ -0,0 +1,98 @@
+package io.wispforest.owo.particles.systems;
+
+import io.wispforest.owo.network.NetworkException;
+import io.wispforest.owo.network.serialization.PacketBufSerializer;
+import io.wispforest.owo.particles.ParticlePriority;
+import io.wispforest.owo.util.OwoFreezer;
+import io.wispforest.owo.util.ServicesFrozenException;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.World;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Random;
+
+/**
+ * A particle system whose executor draws all of its randomness from
+ * a {@link Random} seeded by the spawning side. Instead of shipping
+ * randomization results in the data record, the server only sends
+ * the seed - every client then renders the exact same effect
+ * <p>
+ * Obtain instances via {@link ParticleSystemController#registerSeeded(Class, SeededParticleExecutor)}
+ *
+ * @param <T> The data class
+ */
+public class SeededParticleSystem<T> {
+
+    final ParticleSystem<Invocation<T>> system;
+    SeededParticleExecutor<T> executor;
+
+    private final boolean permitsContextlessExecution;
+
+    @SuppressWarnings("unchecked")
+    SeededParticleSystem(ParticleSystemController controller, Class<T> dataClass, @Nullable SeededParticleExecutor<T> executor) {
+        this.executor = executor;
+        this.permitsContextlessExecution = dataClass == Void.class;
+
+        final var adapter = PacketBufSerializer.get(dataClass);
+        this.system = controller.registerInternal((Class<Invocation<T>>) (Object) Invocation.class, new PacketBufSerializer<>((buf, invocation) -> {
+            buf.writeLong(invocation.seed);
+            adapter.serializer().accept(buf, invocation.data);
+        }, buf -> new Invocation<>(buf.readLong(), adapter.deserializer().apply(buf))),
+                (world, pos, invocation) -> this.executor.executeParticleSystem(world, pos, invocation.data, new Random(invocation.seed)));
+    }
+
+    /**
+     * Sets the system's executor
+     *
+     * @param executor The code that is run to actually display the system
+     * @throws NetworkException if this system already has an executor
+     */
+    public void setExecutor(SeededParticleExecutor<T> executor) {
+        if (OwoFreezer.isFrozen()) throw new ServicesFrozenException("Particle systems can only be changed during mod init");
+        if (this.executor != null) throw new NetworkException("Seeded particle system already has an executor");
+
+        this.executor = executor;
+    }
+
+    /**
+     * Configures how executions of this system are accounted
+     * for in the client's particle budget
+     *
+     * @see ParticleSystem#setBudget(ParticlePriority, int)
+     */
+    public void setBudget(ParticlePriority priority, int estimatedParticles) {
+        this.system.setBudget(priority, estimatedParticles);
+    }
+
+    /**
+     * Spawns this system in the given world at the given
+     * position, with a seed drawn from the world's random
+     *
+     * @param world The world to execute in
+     * @param pos   The position to execute at
+     * @param data  The context to execute with
+     * @return The seed that was used
+     */
+    public long spawn(World world, Vec3d pos, @Nullable T data) {
+        final long seed = world.random.nextLong();
+        this.spawn(world, pos, data, seed);
+        return seed;
+    }
+
+    /**
+     * Spawns this system in the given world at the given
+     * position, with the given seed. Spawning twice with
+     * the same seed and data yields the same effect
+     *
+     * @param world The world to execute in
+     * @param pos   The position to execute at
+     * @param data  The context to execute with
+     * @param seed  The seed to derive the executor's random from
+     */
+    public void spawn(World world, Vec3d pos, @Nullable T data, long seed) {
+        if (data == null && !permitsContextlessExecution) throw new IllegalStateException("This particle system does not permit 'null' data");
+        this.system.spawn(world, pos, new Invocation<>(seed, data));
+    }
+
+    record Invocation<T>(long seed, T data) {}
+}
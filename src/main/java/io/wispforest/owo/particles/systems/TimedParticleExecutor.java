@@ -0,0 +1,19 @@
+package io.wispforest.owo.particles.systems;
+
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.World;
+
+public interface TimedParticleExecutor<T> {
+    /**
+     * Called once every client tick while a timed
+     * particle system is running
+     *
+     * @param world    The world to display in
+     * @param pos      The position the system was spawned at
+     * @param data     The data the system was spawned with
+     * @param tick     The amount of ticks since the system started
+     * @param progress How far along the system is, from {@code 0} on the
+     *                 first tick to {@code 1} on the last one
+     */
+    void tick(World world, Vec3d pos, T data, int tick, float progress);
+}
@@ -0,0 +1,69 @@
+package io.wispforest.owo.particles.systems;
+
+import io.wispforest.owo.particles.ParticleBudget;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.World;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Environment(EnvType.CLIENT)
+final class TimedParticleScheduler {
+
+    private static final List<Sequence<?>> SEQUENCES = new ArrayList<>();
+
+    private TimedParticleScheduler() {}
+
+    static <T> void schedule(TimedParticleSystem<T> system, World world, Vec3d pos, TimedParticleSystem.Invocation<T> invocation) {
+        SEQUENCES.add(new Sequence<>(system, world, pos, invocation.id(), invocation.startTick(), invocation.data()));
+    }
+
+    static void cancel(TimedParticleSystem<?> system, int id) {
+        SEQUENCES.removeIf(sequence -> sequence.system == system && sequence.id == id);
+    }
+
+    private static void tick(MinecraftClient client) {
+        if (SEQUENCES.isEmpty()) return;
+
+        final var world = client.world;
+        if (world == null) {
+            SEQUENCES.clear();
+            return;
+        }
+
+        final long time = world.getTime();
+        SEQUENCES.removeIf(sequence -> {
+            // the world changes on respawn and when switching
+            // dimensions, in which case the sequence is cancelled
+            if (sequence.world != world) return true;
+
+            // sequences which arrive late skip ahead
+            // instead of running behind the server
+            final long tick = time - sequence.startTick;
+            if (tick >= sequence.system.duration) return true;
+            if (tick < 0) return false;
+
+            sequence.run((int) tick);
+            return false;
+        });
+    }
+
+    private record Sequence<T>(TimedParticleSystem<T> system, World world, Vec3d pos, int id, long startTick, T data) {
+        private void run(int tick) {
+            if (ParticleBudget.request(this.system.priority, this.system.estimatedParticles) == 0) return;
+
+            final float progress = this.system.duration <= 1 ? 1 : tick / (float) (this.system.duration - 1);
+            this.system.executor.tick(this.world, this.pos, this.data, tick, progress);
+        }
+    }
+
+    static {
+        ClientTickEvents.END_CLIENT_TICK.register(TimedParticleScheduler::tick);
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> client.execute(SEQUENCES::clear));
+    }
+}
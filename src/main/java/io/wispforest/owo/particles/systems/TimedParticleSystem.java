@@ -0,0 +1,163 @@
+package io.wispforest.owo.particles.systems;
+
+import io.wispforest.owo.network.NetworkException;
+import io.wispforest.owo.network.serialization.PacketBufSerializer;
+import io.wispforest.owo.particles.ParticlePriority;
+import io.wispforest.owo.util.OwoFreezer;
+import io.wispforest.owo.util.ServicesFrozenException;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.World;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A particle system which runs for a fixed amount of ticks. Spawning it
+ * on the server sends a single invocation carrying the tick it starts at,
+ * after which the client runs the whole sequence locally by calling the
+ * {@link TimedParticleExecutor} once every tick - no matter how long the
+ * sequence is, it only costs one packet
+ * <p>
+ * Running sequences can be cancelled with the id returned when spawning them.
+ * Obtain instances via {@link ParticleSystemController#registerTimed(Class, int, TimedParticleExecutor)}
+ *
+ * @param <T> The data class
+ */
+public class TimedParticleSystem<T> {
+
+    final ParticleSystem<Invocation<T>> spawnSystem;
+    final ParticleSystem<Integer> cancelSystem;
+
+    final int duration;
+    TimedParticleExecutor<T> executor;
+
+    ParticlePriority priority = ParticlePriority.NORMAL;
+    int estimatedParticles = 8;
+
+    private final boolean permitsContextlessExecution;
+
+    private int nextId = 0;
+    private int nextClientId = -1;
+    private final Int2ObjectMap<ActiveSequence> activeSequences = new Int2ObjectOpenHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    TimedParticleSystem(ParticleSystemController controller, Class<T> dataClass, int duration, @Nullable TimedParticleExecutor<T> executor) {
+        this.duration = duration;
+        this.executor = executor;
+        this.permitsContextlessExecution = dataClass == Void.class;
+
+        final var adapter = PacketBufSerializer.get(dataClass);
+        this.spawnSystem = controller.registerInternal((Class<Invocation<T>>) (Object) Invocation.class, new PacketBufSerializer<>((buf, invocation) -> {
+            buf.writeVarInt(invocation.id);
+            buf.writeVarLong(invocation.startTick);
+            adapter.serializer().accept(buf, invocation.data);
+        }, buf -> new Invocation<>(buf.readVarInt(), buf.readVarLong(), adapter.deserializer().apply(buf))),
+                (world, pos, invocation) -> TimedParticleScheduler.schedule(this, world, pos, invocation));
+
+        this.cancelSystem = controller.registerInternal(Integer.class, PacketBufSerializer.get(Integer.class),
+                (world, pos, id) -> TimedParticleScheduler.cancel(this, id));
+
+        // scheduling spawns nothing by itself, the
+        // budget is accounted for on every tick instead
+        this.spawnSystem.setBudget(this.priority, 0);
+    }
+
+    /**
+     * Sets the system's executor
+     *
+     * @param executor The code that is run every tick to display the system
+     * @throws NetworkException if this system already has an executor
+     */
+    public void setExecutor(TimedParticleExecutor<T> executor) {
+        if (OwoFreezer.isFrozen()) throw new ServicesFrozenException("Particle systems can only be changed during mod init");
+        if (this.executor != null) throw new NetworkException("Timed particle system already has an executor");
+
+        this.executor = executor;
+    }
+
+    /**
+     * Configures how every tick of a running sequence is accounted
+     * for in the client's particle budget. Ticks which do not get
+     * any budget are skipped
+     *
+     * @param priority           The priority of this system
+     * @param estimatedParticles The amount of particles one tick
+     *                           of this system roughly spawns
+     * @see ParticleSystem#setBudget(ParticlePriority, int)
+     */
+    public void setBudget(ParticlePriority priority, int estimatedParticles) {
+        this.priority = priority;
+        this.estimatedParticles = estimatedParticles;
+        this.spawnSystem.setBudget(priority, 0);
+    }
+
+    /**
+     * Starts this system in the given world at the given position
+     *
+     * @param world The world to execute in
+     * @param pos   The position to execute at
+     * @param data  The context to execute with
+     * @return The id of the started sequence, used for cancelling it
+     */
+    public int spawn(World world, Vec3d pos, @Nullable T data) {
+        return this.spawn(world, pos, data, 0);
+    }
+
+    /**
+     * Starts this system in the given world at the given position,
+     * after the given amount of ticks have passed
+     *
+     * @param world The world to execute in
+     * @param pos   The position to execute at
+     * @param data  The context to execute with
+     * @param delay The amount of ticks to wait before starting
+     * @return The id of the started sequence, used for cancelling it
+     */
+    public int spawn(World world, Vec3d pos, @Nullable T data, int delay) {
+        if (data == null && !permitsContextlessExecution) throw new IllegalStateException("This particle system does not permit 'null' data");
+
+        final long startTick = world.getTime() + delay;
+        // sequences started on the client get negative ids,
+        // so that they never collide with the server's
+        final int id = world.isClient ? this.nextClientId-- : this.nextId++;
+
+        if (!world.isClient) {
+            this.activeSequences.put(id, new ActiveSequence((ServerWorld) world, pos, startTick + this.duration));
+        }
+
+        this.spawnSystem.spawn(world, pos, new Invocation<>(id, startTick, data));
+        return id;
+    }
+
+    /**
+     * Cancels the sequence with the given id, if it is still running
+     *
+     * @param world The world the sequence was spawned in
+     * @param id    The id returned when the sequence was spawned
+     */
+    public void cancel(World world, int id) {
+        if (world.isClient) {
+            TimedParticleScheduler.cancel(this, id);
+            return;
+        }
+
+        final var sequence = this.activeSequences.remove(id);
+        if (sequence == null || sequence.endTick < world.getTime()) return;
+
+        this.cancelSystem.spawn(sequence.world, sequence.pos, id);
+    }
+
+    void pruneExpired() {
+        if (this.activeSequences.isEmpty()) return;
+        this.activeSequences.values().removeIf(sequence -> sequence.endTick < sequence.world.getTime());
+    }
+
+    void clearActive() {
+        this.activeSequences.clear();
+    }
+
+    record Invocation<T>(int id, long startTick, T data) {}
+
+    private record ActiveSequence(ServerWorld world, Vec3d pos, long endTick) {}
+}
@@ -2,13 +2,22 @@
 package io.wispforest.uwu.network;
 
 import io.wispforest.owo.network.annotations.ElementType;
+import io.wispforest.owo.network.annotations.PackedPositions;
+import io.wispforest.owo.network.serialization.DedupTable;
+import io.wispforest.owo.network.serialization.PositionCollectionSerializer;
 import io.wispforest.owo.network.serialization.RecordSerializer;
 import net.fabricmc.fabric.api.networking.v1.PacketByteBufs;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.text.LiteralText;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.Vec3d;
 
-import java.util.Collection;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Objects;
+import java.util.*;
 import java.util.function.BiPredicate;
 import java.util.function.Function;
 
@@ -25,10 +34,128 @@ public class UwuNetworkTest {
         var read = serializer.write(buffer, test).read(buffer);
 
         testEquals(test, read);
+
+        testPackedPositions();
+        testDeduplication();
+    }
+
+    private static void testPackedPositions() {
+        // unsorted input must keep its order, sorting only has to preserve the elements
+        var unsorted = List.of(new BlockPos(5, 64, 3), new BlockPos(1, 70, 2), new BlockPos(4, 65, 9));
+
+        var buffer = PacketByteBufs.create();
+        PositionCollectionSerializer.writeBlockPositions(buffer, unsorted, false, false);
+        assertEquals(unsorted, PositionCollectionSerializer.readBlockPositions(buffer, new ArrayList<>()));
+
+        buffer = PacketByteBufs.create();
+        PositionCollectionSerializer.writeBlockPositions(buffer, unsorted, true, false);
+        assertEquals(new HashSet<>(unsorted), PositionCollectionSerializer.readBlockPositions(buffer, new HashSet<>()));
+
+        // all within one section -> section mode, spread out -> delta fallback
+        var sameSection = List.of(new BlockPos(16, 64, 32), new BlockPos(31, 79, 47), new BlockPos(20, 70, 40));
+        var spread = List.of(new BlockPos(-1000, -60, 2500), new BlockPos(15, 64, 16), new BlockPos(16, 320, -16));
+
+        for (var positions : List.of(sameSection, spread)) {
+            buffer = PacketByteBufs.create();
+            PositionCollectionSerializer.writeBlockPositions(buffer, positions, false, true);
+            System.out.println("Encoded " + positions.size() + " block positions in " + buffer.readableBytes() + " bytes");
+            assertEquals(positions, PositionCollectionSerializer.readBlockPositions(buffer, new ArrayList<>()));
+        }
+
+        var chunks = List.of(new ChunkPos(0, 0), new ChunkPos(-5, 12), new ChunkPos(1_000_000, -1_000_000));
+        buffer = PacketByteBufs.create();
+        PositionCollectionSerializer.writeChunkPositions(buffer, chunks, false);
+        assertEquals(chunks, PositionCollectionSerializer.readChunkPositions(buffer, new ArrayList<>()));
+
+        // vectors are quantized to 1/4096 blocks, so the round-trip
+        // may only be off by half of that on every axis
+        var vectors = List.of(new Vec3d(0.1, 64.2, -0.3), new Vec3d(-29_999_999.123456, 319.99999, 1e-9), new Vec3d(1 / 4096d, -1 / 8192d, 7.5));
+        buffer = PacketByteBufs.create();
+        PositionCollectionSerializer.writeVectors(buffer, vectors, false);
+        assertEquals(vectors, PositionCollectionSerializer.readVectors(buffer, new ArrayList<>()), Objects::toString, (expected, actual) -> {
+            if (expected.size() != actual.size()) return false;
+
+            for (int i = 0; i < expected.size(); i++) {
+                var delta = expected.get(i).subtract(actual.get(i));
+                if (Math.abs(delta.x) > 1 / 8192d || Math.abs(delta.y) > 1 / 8192d || Math.abs(delta.z) > 1 / 8192d) return false;
+            }
+
+            return true;
+        });
+
+        // the same through the annotation on a record
+        var record = new PackedRecord(sameSection, new HashSet<>(chunks), vectors);
+        var serializer = RecordSerializer.create(PackedRecord.class);
+
+        buffer = PacketByteBufs.create();
+        var read = serializer.write(buffer, record).read(buffer);
+
+        assertEquals(record.blocks(), read.blocks());
+        assertEquals(record.chunks(), read.chunks());
+        assertEquals(record.vectors().size(), read.vectors().size());
+    }
+
+    private static void testDeduplication() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+
+        var named = new ItemStack(Items.DIAMOND_SWORD);
+        named.setCustomName(new LiteralText("epic sword"));
+
+        var tag = new NbtCompound();
+        tag.putString("hahayes", "epic text");
+
+        var record = new DedupRecord(
+                List.of(new ItemStack(Items.DIAMOND, 5), named, new ItemStack(Items.DIAMOND, 5), named.copy(), ItemStack.EMPTY, new ItemStack(Items.DIAMOND, 6)),
+                // null values must not shift the indices of later back-references
+                Arrays.asList(tag, tag.copy(), null, new NbtCompound(), tag)
+        );
+        var serializer = RecordSerializer.create(DedupRecord.class);
+
+        var plainBuffer = PacketByteBufs.create();
+        serializer.write(plainBuffer, record);
+
+        // equal values after the first one must be written as back-references
+        var buffer = PacketByteBufs.create();
+        try (var table = DedupTable.open()) {
+            serializer.write(buffer, record);
+        }
+
+        System.out.println("Encoded without deduplication in " + plainBuffer.readableBytes() + " bytes, with it in " + buffer.readableBytes() + " bytes");
+
+        DedupRecord read;
+        try (var table = DedupTable.open()) {
+            read = serializer.read(buffer);
+        }
+
+        assertEquals(record.stacks(), read.stacks(), Objects::toString, (expected, actual) -> {
+            if (expected.size() != actual.size()) return false;
+
+            for (int i = 0; i < expected.size(); i++) {
+                if (!ItemStack.areEqual(expected.get(i), actual.get(i))) return false;
+            }
+
+            return true;
+        });
+        assertEquals(record.tags(), read.tags());
+
+        // back-references must resolve to independent copies
+        if (read.stacks().get(0) == read.stacks().get(2) || read.tags().get(0) == read.tags().get(4)) {
+            throw new IllegalStateException("Deduplicated values were not copied");
+        }
+
+        // and actually be smaller than the plain encoding
+        if (buffer.readableBytes() != 0 || plainBuffer.writerIndex() <= buffer.writerIndex()) {
+            throw new IllegalStateException("Deduplication did not reduce the encoded size");
+        }
     }
 
     public record TestRecord(Collection<String> text, TestEnum enumValue) {}
 
+    public record DedupRecord(List<ItemStack> stacks, List<NbtCompound> tags) {}
+
+    public record PackedRecord(@PackedPositions List<BlockPos> blocks, @PackedPositions(sort = true) Collection<ChunkPos> chunks, @PackedPositions List<Vec3d> vectors) {}
+
     public enum TestEnum {ONE_VALUE, ANOTHER_VALUE}
 
     private static <T> void testEquals(T object, T other) {
@@ -41,4 +168,15 @@ public class UwuNetworkTest {
         System.out.println("predicate.test(object, other) -> " + predicate.test(object, other));
     }
 
+    private static <T> void assertEquals(T expected, T actual) {
+        assertEquals(expected, actual, Objects::toString, Object::equals);
+    }
+
+    private static <T> void assertEquals(T expected, T actual, Function<T, String> formatter, BiPredicate<T, T> predicate) {
+        testEquals(expected, actual, formatter, predicate);
+        if (!predicate.test(expected, actual)) {
+            throw new IllegalStateException("Expected '" + formatter.apply(expected) + "' but got '" + formatter.apply(actual) + "'");
+        }
+    }
+
 }